@@ -0,0 +1,145 @@
+package me.mrbubbles.fabricremapper;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates synthetic mappings, classes and jars, so the benchmarks never touch the network.
+ * <p>
+ * The mappings contain {@code classes} Minecraft classes with {@link #MEMBERS} fields and methods each. Mod classes
+ * extend those classes by their named name, as TinyRemapper leaves them, but still reference their members by
+ * intermediary name, which is what the Tiny v2 fixups rewrite. Every other mod class references no Minecraft member.
+ */
+final class BenchmarkFixtures {
+
+    static final int MEMBERS = 10;
+
+    private BenchmarkFixtures() {
+    }
+
+    static String tinyV2(int classes) {
+        StringBuilder builder = new StringBuilder("tiny\t2\t0\tintermediary\tnamed\n");
+
+        for (int i = 0; i < classes; i++) {
+            builder.append("c\tnet/minecraft/class_").append(i).append("\tnet/minecraft/Named").append(i).append('\n');
+
+            for (int j = 0; j < MEMBERS; j++) {
+                int member = i * MEMBERS + j;
+                builder.append("\tf\tI\tfield_").append(member).append("\tnamedField").append(member).append('\n');
+                builder.append("\tm\t()V\tmethod_").append(member).append("\tnamedMethod").append(member).append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    static Path writeTinyV2(Path dir, int classes) throws IOException {
+        return Files.writeString(dir.resolve("mappings.tiny"), tinyV2(classes));
+    }
+
+    static List<byte[]> modClasses(int count, int mappedClasses) {
+        Random random = new Random(count);
+        List<byte[]> classes = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            int target = random.nextInt(mappedClasses);
+            classes.add(modClass("com/example/mod/Class" + i, target, i % 2 == 0));
+        }
+
+        return classes;
+    }
+
+    private static byte[] modClass(String name, int target, boolean referencesMinecraft) {
+        String superName = referencesMinecraft ? "net/minecraft/Named" + target : "java/lang/Object";
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, superName, null);
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        for (int j = 0; j < MEMBERS; j++) {
+            int member = target * MEMBERS + j;
+            writer.visitField(Opcodes.ACC_PRIVATE, "value" + j, "I", null, null).visitEnd();
+
+            MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "run" + j, "()V", null, null);
+            method.visitCode();
+
+            if (referencesMinecraft) {
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, superName, "method_" + member, "()V", false);
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitFieldInsn(Opcodes.GETFIELD, superName, "field_" + member, "I");
+                method.visitInsn(Opcodes.POP);
+                method.visitLdcInsn("field_" + member);
+                method.visitInsn(Opcodes.POP);
+            } else {
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitFieldInsn(Opcodes.GETFIELD, name, "value" + j, "I");
+                method.visitInsn(Opcodes.POP);
+                method.visitLdcInsn("plain string " + j);
+                method.visitInsn(Opcodes.POP);
+            }
+
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    static Path writeJar(Path path, List<byte[]> classes, int resources) throws IOException {
+        Random random = new Random(resources);
+
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (int i = 0; i < classes.size(); i++) {
+                output.putNextEntry(new ZipEntry("com/example/mod/Class" + i + ".class"));
+                output.write(classes.get(i));
+                output.closeEntry();
+            }
+
+            for (int i = 0; i < resources; i++) {
+                byte[] bytes = new byte[4096];
+                random.nextBytes(bytes);
+
+                output.putNextEntry(new ZipEntry("assets/mod/textures/texture" + i + ".png"));
+                output.write(bytes);
+                output.closeEntry();
+            }
+        }
+
+        return path;
+    }
+
+    static byte[] accessWidener(int lines, int mappedClasses) {
+        StringBuilder builder = new StringBuilder("accessWidener\tv2\tintermediary\n");
+
+        for (int i = 0; i < lines; i++) {
+            int member = i % (mappedClasses * MEMBERS);
+            String owner = "net/minecraft/class_" + member / MEMBERS;
+
+            builder.append("accessible\tclass\t").append(owner).append('\n');
+            builder.append("accessible\tmethod\t").append(owner).append("\tmethod_").append(member).append("\t()V\n");
+            builder.append("mutable\tfield\t").append(owner).append("\tfield_").append(member).append("\tI\n");
+        }
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+package me.mrbubbles.fabricremapper;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the Tiny v2 file, opening the compiled index and looking names up in it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MappingsBenchmark {
+
+    @Param({"5000"})
+    public int classes;
+
+    private Path dir;
+    private Path tiny;
+    private Path index;
+    private MappingsIndex mappingsIndex;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("fabric-remapper-jmh");
+        tiny = BenchmarkFixtures.writeTinyV2(dir, classes);
+        index = dir.resolve("mappings.idx");
+        MappingsIndex.write(MappingSet.read(tiny, "intermediary", "named"), index);
+        mappingsIndex = MappingsIndex.open(index);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(tiny);
+        Files.deleteIfExists(index);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public MappingSet getMappings() throws IOException {
+        return RemapUtil.getMappings(tiny);
+    }
+
+    @Benchmark
+    public MappingsIndex openIndex() throws IOException {
+        return MappingsIndex.open(index);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String memberLookupHit() {
+        return mappingsIndex.mapMember("net/minecraft/Named42", "method_425", "()V");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String memberLookupMiss() {
+        return mappingsIndex.mapMemberOrName("com/example/mod/Class1", "run1", "()V");
+    }
+}
@@ -0,0 +1,61 @@
+package me.mrbubbles.fabricremapper;
+
+import org.objectweb.asm.commons.Remapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-class cost of the Tiny v2 fixups and of access widener remapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RemapClassBenchmark {
+
+    private static final int CORPUS_SIZE = 1000;
+    private static final int MAPPED_CLASSES = 5000;
+
+    private MappingLookup mappings;
+    private List<byte[]> corpus;
+    private byte[] accessWidener;
+    private final RenameStats stats = new RenameStats(false, false);
+
+    @Setup
+    public void setup() throws IOException {
+        Path dir = Files.createTempDirectory("fabric-remapper-jmh");
+        Path tiny = BenchmarkFixtures.writeTinyV2(dir, MAPPED_CLASSES);
+        Path index = dir.resolve("mappings.idx");
+
+        MappingsIndex.write(MappingSet.read(tiny, "intermediary", "named"), index);
+        mappings = MappingsIndex.open(index);
+        corpus = BenchmarkFixtures.modClasses(CORPUS_SIZE, MAPPED_CLASSES);
+        accessWidener = BenchmarkFixtures.accessWidener(1000, MAPPED_CLASSES);
+
+        Files.delete(tiny);
+        index.toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void remapClass(Blackhole blackhole) {
+        for (byte[] classBytes : corpus) {
+            blackhole.consume(RemapUtil.remapClass(classBytes, mappings, stats));
+        }
+    }
+
+    @Benchmark
+    public byte[] remapAccessWidener() {
+        return RemapUtil.remapAccessWidener(accessWidener, new Remapper() {
+        }, mappings);
+    }
+}
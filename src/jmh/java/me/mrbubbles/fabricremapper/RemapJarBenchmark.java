@@ -0,0 +1,78 @@
+package me.mrbubbles.fabricremapper;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of rewriting a jar with {@link RemapUtil#remapJar}, including the zip I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RemapJarBenchmark {
+
+    private static final int MAPPED_CLASSES = 5000;
+
+    @Param({"2000"})
+    public int classes;
+
+    @Param({"500"})
+    public int resources;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"-1", "0"})
+    public int compressionLevel;
+
+    private Path dir;
+    private Path source;
+    private Path jar;
+    private Path index;
+    private MappingLookup mappings;
+    private RemapOptions options;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("fabric-remapper-jmh");
+        Path tiny = BenchmarkFixtures.writeTinyV2(dir, MAPPED_CLASSES);
+        index = dir.resolve("mappings.idx");
+
+        MappingsIndex.write(MappingSet.read(tiny, "intermediary", "named"), index);
+        mappings = MappingsIndex.open(index);
+        source = BenchmarkFixtures.writeJar(dir.resolve("source.jar"), BenchmarkFixtures.modClasses(classes, MAPPED_CLASSES), resources);
+        jar = dir.resolve("remapped.jar");
+
+        options = new RemapOptions();
+        options.setThreads(threads);
+        options.setCompressionLevel(compressionLevel);
+
+        Files.delete(tiny);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyJar() throws IOException {
+        Files.copy(source, jar, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(jar);
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(index);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void remapJar() throws IOException {
+        RemapUtil.remapJar(jar, null, mappings, options, new RenameStats(false, false));
+    }
+}
@@ -0,0 +1,192 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asynchronous HTTP downloads over one shared {@link HttpClient}.
+ * <p>
+ * A download is written to a {@code .part} file next to its target, and the response's {@code ETag} and
+ * {@code Last-Modified} are kept in a {@code .validators} file. An interrupted download is resumed with a range
+ * request, and a target that is already downloaded is only fetched again if the server reports it has changed.
+ * Completed downloads are checked against the {@code .sha256} or {@code .sha1} file published next to them.
+ */
+public class Downloader {
+
+    private static final Downloader SHARED = new Downloader(HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build());
+
+    private final HttpClient client;
+    private final Map<Path, CompletableFuture<Path>> downloads = new ConcurrentHashMap<>();
+
+    public Downloader(HttpClient client) {
+        this.client = client;
+    }
+
+    public static Downloader shared() {
+        return SHARED;
+    }
+
+    /**
+     * Downloads a file to the given target and checks it against its published checksum. Calls for a target that is
+     * still downloading share the same future, so a download can be started early and picked up later. Once it is
+     * done, a later call only revalidates the downloaded file.
+     */
+    public CompletableFuture<Path> download(URI uri, Path target) {
+        return download(uri, target, true);
+    }
+
+    /**
+     * Fetches a file that has no published checksum, revalidating it if it was downloaded before. A request that is
+     * still in flight for the same target is shared.
+     */
+    public CompletableFuture<Path> refresh(URI uri, Path target) {
+        return download(uri, target, false);
+    }
+
+    private CompletableFuture<Path> download(URI uri, Path target, boolean verify) {
+        CompletableFuture<Path> download = new CompletableFuture<>();
+        CompletableFuture<Path> existing = downloads.putIfAbsent(target, download);
+        if (existing != null) return existing;
+
+        // Finished downloads are forgotten before anyone waiting on them resumes, so the map only holds those in flight
+        start(uri, target, verify).whenComplete((path, error) -> {
+            downloads.remove(target, download);
+            if (error != null) download.completeExceptionally(error);
+            else download.complete(path);
+        });
+
+        return download;
+    }
+
+    private CompletableFuture<Path> start(URI uri, Path target, boolean verify) {
+        Path part = sibling(target, ".part");
+        Path validatorsFile = sibling(target, ".validators");
+
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+
+            Properties validators = FileUtil.readProperties(validatorsFile);
+            String etag = validators.getProperty("etag");
+            String lastModified = validators.getProperty("last-modified");
+            boolean validated = etag != null || lastModified != null;
+
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+            boolean conditional = validated && Files.isRegularFile(target);
+            long resumeFrom = !conditional && validated && Files.isRegularFile(part) ? Files.size(part) : 0;
+
+            if (conditional) {
+                if (etag != null) request.header("If-None-Match", etag);
+                if (lastModified != null) request.header("If-Modified-Since", lastModified);
+            } else if (resumeFrom > 0) {
+                request.header("Range", "bytes=" + resumeFrom + "-");
+                request.header("If-Range", etag != null ? etag : lastModified);
+            }
+
+            // The checksum is only needed once the download has finished, so it is fetched alongside it
+            CompletableFuture<Checksum> checksum = !verify ? CompletableFuture.completedFuture(null) : conditional ? null : fetchChecksum(uri);
+
+            return client.sendAsync(request.build(), info -> switch (info.statusCode()) {
+                case 304 -> HttpResponse.BodySubscribers.replacing(target);
+                case 200, 206 -> {
+                    writeValidators(validatorsFile, info.headers());
+                    yield HttpResponse.BodySubscribers.ofFile(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            info.statusCode() == 206 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+                }
+                default -> HttpResponse.BodySubscribers.replacing(null);
+            }).thenCompose(response -> switch (response.statusCode()) {
+                case 304 -> CompletableFuture.completedFuture(target);
+                case 200, 206 -> (checksum != null ? checksum : fetchChecksum(uri)).thenApply(expected -> complete(part, validatorsFile, target, expected));
+                default -> CompletableFuture.failedFuture(statusException(uri, response.statusCode()));
+            });
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Path complete(Path part, Path validatorsFile, Path target, Checksum expected) {
+        try {
+            if (expected != null) {
+                String actual = MappingsCache.digest(part, expected.algorithm());
+                if (!actual.equalsIgnoreCase(expected.value())) {
+                    Files.deleteIfExists(part);
+                    Files.deleteIfExists(validatorsFile);
+                    throw new IOException(expected.algorithm() + " mismatch for " + target.getFileName() + ": expected " + expected.value() + " but got " + actual);
+                }
+            }
+
+            FileUtil.moveAtomically(part, target);
+            return target;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Fetches the checksum published next to a file, preferring SHA-256. Completes with null if the server reports
+     * there is none, and fails if it cannot be fetched for any other reason, so a download is never left unchecked
+     * because of a network error.
+     */
+    private CompletableFuture<Checksum> fetchChecksum(URI uri) {
+        return fetchChecksum(uri, "SHA-256", ".sha256")
+                .thenCompose(checksum -> checksum != null ? CompletableFuture.completedFuture(checksum) : fetchChecksum(uri, "SHA-1", ".sha1"));
+    }
+
+    private CompletableFuture<Checksum> fetchChecksum(URI uri, String algorithm, String extension) {
+        URI checksumUri = URI.create(uri + extension);
+        HttpRequest request = HttpRequest.newBuilder(checksumUri).GET().build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() == 404) return null;
+            if (response.statusCode() != 200) throw new CompletionException(statusException(checksumUri, response.statusCode()));
+            if (response.body().isBlank()) throw new CompletionException(new IOException("Empty checksum at " + checksumUri));
+
+            return new Checksum(algorithm, response.body().trim().split("\\s+")[0].toLowerCase(Locale.ROOT));
+        });
+    }
+
+    private static void writeValidators(Path validatorsFile, HttpHeaders headers) {
+        Properties validators = new Properties();
+        headers.firstValue("ETag").ifPresent(etag -> validators.setProperty("etag", etag));
+        headers.firstValue("Last-Modified").ifPresent(lastModified -> validators.setProperty("last-modified", lastModified));
+
+        try {
+            if (validators.isEmpty()) {
+                Files.deleteIfExists(validatorsFile);
+                return;
+            }
+
+            FileUtil.writeProperties(validatorsFile, validators);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static IOException statusException(URI uri, int statusCode) {
+        return new IOException("Server returned HTTP " + statusCode + " for " + uri);
+    }
+
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    private record Checksum(String algorithm, String value) {
+    }
+}
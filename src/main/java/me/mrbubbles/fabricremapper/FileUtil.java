@@ -0,0 +1,72 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * File helpers shared by the caches, the downloader and incremental remapping.
+ */
+final class FileUtil {
+
+    private FileUtil() {
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+
+        try (Stream<Path> stream = Files.walk(dir)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Reads a properties file, giving empty properties if it does not exist.
+     */
+    static Properties readProperties(Path path) throws IOException {
+        Properties properties = new Properties();
+
+        if (Files.isRegularFile(path)) {
+            try (InputStream inputStream = Files.newInputStream(path)) {
+                properties.load(inputStream);
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Writes a properties file next to its target first and then moves it into place, so it is never read half
+     * written.
+     */
+    static void writeProperties(Path path, Properties properties) throws IOException {
+        Path part = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".part");
+
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(part)) {
+                properties.store(outputStream, null);
+            }
+
+            moveAtomically(part, path);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package me.mrbubbles.fabricremapper;
+
+import org.objectweb.asm.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Streaming implementation of the Tiny v2 fixups.
+ * <p>
+ * Declarations are renamed as they pass through. Method bodies are only rewritten for the methods in
+ * {@code changedMethods}; every other method goes straight to the next visitor, so when that is a {@link ClassWriter}
+ * created from the same {@link ClassReader}, its code is copied verbatim instead of being decoded and encoded again.
+ * A {@code null} set rewrites every method, for chains where the changed methods cannot be known in advance.
+ */
+final class FixupClassVisitor extends ClassVisitor {
+
+    private final MappingLookup mappings;
+    private final RenameStats stats;
+    private final Set<String> changedMethods;
+    private String className;
+
+    FixupClassVisitor(ClassVisitor next, MappingLookup mappings, RenameStats stats, Set<String> changedMethods) {
+        super(Opcodes.ASM9, next);
+        this.mappings = mappings;
+        this.stats = stats;
+        this.changedMethods = changedMethods;
+    }
+
+    /**
+     * Scans the constant pool straight from the class bytes for a string that might be a mapped class or member name.
+     * Every name the fixups look up is a constant pool string of its own, so a class without one needs no fixups
+     * at all and can skip ASM. Malformed or unknown constant pools are reported as possibly changed.
+     */
+    static boolean mightChange(byte[] classBytes, MappingLookup mappings) {
+        if (classBytes.length < 10) return true;
+
+        int count = readUnsignedShort(classBytes, 8);
+        int position = 10;
+
+        for (int i = 1; i < count; i++) {
+            if (position >= classBytes.length) return true;
+
+            switch (classBytes[position]) {
+                case 1 -> {
+                    if (position + 3 > classBytes.length) return true;
+
+                    int length = readUnsignedShort(classBytes, position + 1);
+                    if (position + 3 + length > classBytes.length) return true;
+                    if (mappings.mightContainName(classBytes, position + 3, length)) return true;
+
+                    position += 3 + length;
+                }
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> position += 5;
+                case 5, 6 -> {
+                    position += 9;
+                    i++;
+                }
+                case 7, 8, 16, 19, 20 -> position += 3;
+                case 15 -> position += 4;
+                default -> {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int position) {
+        return (bytes[position] & 0xFF) << 8 | bytes[position + 1] & 0xFF;
+    }
+
+    /**
+     * Finds the methods whose bodies reference a name the fixups would rename, keyed by name and descriptor.
+     */
+    static Set<String> changedMethods(ClassReader reader, MappingLookup mappings) {
+        Set<String> changed = new HashSet<>();
+
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                String method = name + descriptor;
+
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                        if (mappings.mapClass(owner) != null || mappings.mapMemberOrName(owner, name, descriptor) != null) changed.add(method);
+                    }
+
+                    @Override
+                    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                        if (mappings.mapClass(owner) != null || mappings.mapMemberOrName(owner, name, descriptor) != null) changed.add(method);
+                    }
+
+                    @Override
+                    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+                        if (mapInvokeDynamicName(name, descriptor, bootstrapMethodArguments, mappings) != null
+                                || mappings.mapMemberOrName(bootstrapMethodHandle.getOwner(), bootstrapMethodHandle.getName(), bootstrapMethodHandle.getDesc()) != null) {
+                            changed.add(method);
+                        }
+                    }
+
+                    @Override
+                    public void visitLdcInsn(Object value) {
+                        if (value instanceof String string && mapStringConstant(string, mappings) != null) changed.add(method);
+                    }
+                };
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        return changed;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        String mapped = mappings.mapClass(name);
+        if (mapped != null) {
+            stats.record(RenameStats.Category.CLASS, name, mapped);
+            name = mapped;
+        }
+
+        className = name;
+        super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        String mapped = mappings.mapMemberOrName(className, name, descriptor);
+        if (mapped != null) {
+            stats.record(RenameStats.Category.FIELD, name, mapped);
+            name = mapped;
+        }
+
+        return super.visitField(access, name, descriptor, signature, value);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        boolean changed = changedMethods == null || changedMethods.contains(name + descriptor);
+
+        String mapped = mappings.mapMemberOrName(className, name, descriptor);
+        if (mapped != null) {
+            stats.record(RenameStats.Category.METHOD, name, mapped);
+            name = mapped;
+        }
+
+        MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+        return changed && next != null ? new FixupMethodVisitor(next) : next;
+    }
+
+    private final class FixupMethodVisitor extends MethodVisitor {
+
+        FixupMethodVisitor(MethodVisitor next) {
+            super(Opcodes.ASM9, next);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            String mappedOwner = mappings.mapClass(owner);
+            if (mappedOwner != null) {
+                stats.record(RenameStats.Category.CLASS_REFERENCE, owner, mappedOwner);
+                owner = mappedOwner;
+            }
+
+            String mapped = mappings.mapMemberOrName(owner, name, descriptor);
+            if (mapped != null) {
+                stats.record(RenameStats.Category.METHOD_REFERENCE, name, mapped);
+                name = mapped;
+            }
+
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            String mappedOwner = mappings.mapClass(owner);
+            if (mappedOwner != null) {
+                stats.record(RenameStats.Category.CLASS_REFERENCE, owner, mappedOwner);
+                owner = mappedOwner;
+            }
+
+            String mapped = mappings.mapMemberOrName(owner, name, descriptor);
+            if (mapped != null) {
+                stats.record(RenameStats.Category.FIELD_REFERENCE, name, mapped);
+                name = mapped;
+            }
+
+            super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+            String mapped = mapInvokeDynamicName(name, descriptor, bootstrapMethodArguments, mappings);
+            if (mapped != null) {
+                stats.record(RenameStats.Category.INVOKE_DYNAMIC, name, mapped);
+                name = mapped;
+            }
+
+            Handle handle = bootstrapMethodHandle;
+            String mappedBsm = mappings.mapMemberOrName(handle.getOwner(), handle.getName(), handle.getDesc());
+            if (mappedBsm != null) {
+                stats.record(RenameStats.Category.BOOTSTRAP_METHOD, handle.getName(), mappedBsm);
+                bootstrapMethodHandle = new Handle(handle.getTag(), handle.getOwner(), mappedBsm, handle.getDesc(), handle.isInterface());
+            }
+
+            super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            if (value instanceof String cst) {
+                String mapped = mapStringConstant(cst, mappings);
+                if (mapped != null) {
+                    stats.record(RenameStats.Category.STRING_CONSTANT, cst, mapped);
+                    value = mapped;
+                }
+            }
+
+            super.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * Maps the interface method implemented by a lambda or method reference. Its owner is the type the call site
+     * returns and, for {@code LambdaMetafactory}, its descriptor is the first bootstrap argument.
+     */
+    static String mapInvokeDynamicName(String name, String descriptor, Object[] bootstrapMethodArguments, MappingLookup mappings) {
+        Type returnType = Type.getReturnType(descriptor);
+
+        if (returnType.getSort() == Type.OBJECT && bootstrapMethodArguments.length > 0 && bootstrapMethodArguments[0] instanceof Type samType) {
+            return mappings.mapMemberOrName(returnType.getInternalName(), name, samType.getDescriptor());
+        }
+
+        return mappings.mapName(name);
+    }
+
+    /**
+     * Only string constants that are exactly an intermediary class or member name are remapped.
+     */
+    static String mapStringConstant(String cst, MappingLookup mappings) {
+        if (MappingLookup.isIntermediaryName(cst)) return mappings.mapName(cst);
+        if (!cst.contains("class_")) return null;
+
+        if (cst.indexOf('.') == -1) return mappings.mapClass(cst);
+
+        String mapped = mappings.mapClass(cst.replace('.', '/'));
+        return mapped != null ? mapped.replace('/', '.') : null;
+    }
+}
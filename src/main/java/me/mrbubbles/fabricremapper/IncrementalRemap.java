@@ -0,0 +1,277 @@
+package me.mrbubbles.fabricremapper;
+
+import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
+import org.gradle.api.logging.Logger;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remaps only the entries of a jar that changed since the last remap into the same output.
+ * <p>
+ * A state file next to the output records a fingerprint of the mappings and remap settings plus the CRC-32 and size
+ * of every input entry, both of which are read from the zip central directory without inflating anything. On the
+ * next run, changed entries are remapped on their own, with the whole input jar as class path, and merged with the
+ * unchanged entries of the previous output in the same order a full remap writes them, so both give the same jar.
+ * <p>
+ * A class is remapped against its supertypes, so unchanged classes that extend or implement a changed, added or
+ * deleted class of the jar, directly or through other classes of it, are remapped along with it. The state records
+ * the supertypes of every class for this, so only changed classes are read. Changes outside the jar, such as to the
+ * libraries on the class path, are not tracked this way and are covered by the fingerprint instead.
+ * <p>
+ * The state also records the size and modification time of the output it describes. If the output was replaced
+ * since, for example restored from the build cache, its entries can no longer be trusted and the jar is remapped in
+ * full.
+ */
+public class IncrementalRemap {
+
+    private static final Logger LOGGER = RemapperPlugin.getLogger();
+
+    private static final String STATE_SUFFIX = ".remap-state";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String OUTPUT_KEY = "output";
+    private static final String ENTRY_PREFIX = "entry:";
+    private static final String SUPERTYPES_PREFIX = "supertypes:";
+
+    public static Path statePath(Path output) {
+        return output.resolveSibling(output.getFileName() + STATE_SUFFIX);
+    }
+
+    public static void remap(Path input, Path output, String fingerprint, MappingLookup mappings, RemapOptions options, JarRemapper remapper) throws IOException {
+        Path statePath = statePath(output);
+        Map<String, String> current = fingerprints(input);
+        Properties previous = FileUtil.readProperties(statePath);
+
+        Files.deleteIfExists(statePath);
+
+        if (!fingerprint.equals(previous.getProperty(FINGERPRINT_KEY)) || !Files.isRegularFile(output) || input.equals(output)
+                || !outputFingerprint(output).equals(previous.getProperty(OUTPUT_KEY))) {
+            remapper.remap(input, input, output);
+            writeState(statePath, fingerprint, current, supertypes(input, current.keySet(), Map.of()), output);
+            return;
+        }
+
+        Set<String> changed = new LinkedHashSet<>();
+        Set<String> unchanged = new HashSet<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (entry.getValue().equals(previous.getProperty(ENTRY_PREFIX + entry.getKey()))) {
+                unchanged.add(entry.getKey());
+            } else {
+                changed.add(entry.getKey());
+            }
+        }
+
+        Map<String, String> previousSupertypes = new HashMap<>();
+        for (String key : previous.stringPropertyNames()) {
+            if (key.startsWith(SUPERTYPES_PREFIX)) previousSupertypes.put(key.substring(SUPERTYPES_PREFIX.length()), previous.getProperty(key));
+        }
+
+        Set<String> deleted = new HashSet<>();
+        for (String key : previous.stringPropertyNames()) {
+            if (key.startsWith(ENTRY_PREFIX) && !current.containsKey(key.substring(ENTRY_PREFIX.length()))) deleted.add(key.substring(ENTRY_PREFIX.length()));
+        }
+
+        if (changed.isEmpty() && deleted.isEmpty()) {
+            LOGGER.info("'" + output.getFileName() + "' is up to date");
+            writeState(statePath, fingerprint, current, previousSupertypes, output);
+            return;
+        }
+
+        Map<String, String> supertypes = supertypes(input, changed, previousSupertypes);
+        if (!supertypes.keySet().containsAll(classes(unchanged))) {
+            // The state was written before supertypes were recorded
+            remapper.remap(input, input, output);
+            writeState(statePath, fingerprint, current, supertypes(input, current.keySet(), Map.of()), output);
+            return;
+        }
+
+        changed.addAll(dependents(changed, deleted, unchanged, supertypes));
+
+        LOGGER.info("Remapping " + changed.size() + " of " + current.size() + " changed entries of '" + input.getFileName() + "'");
+
+        Path workDir = Files.createTempDirectory(output.toAbsolutePath().getParent(), "remap-incremental");
+        try {
+            Path changedOutput = null;
+            if (!changed.isEmpty()) {
+                Path changedInput = workDir.resolve("changed.jar");
+                copyEntries(input, changedInput, changed);
+
+                changedOutput = workDir.resolve("changed-remapped.jar");
+                remapper.remap(changedInput, input, changedOutput);
+            }
+
+            Path merged = workDir.resolve("merged.jar");
+            merge(current.keySet(), changed, output, changedOutput, merged, mappings, options);
+            FileUtil.moveAtomically(merged, output);
+        } finally {
+            FileUtil.deleteRecursively(workDir);
+        }
+
+        writeState(statePath, fingerprint, current, supertypes, output);
+    }
+
+    /**
+     * The size and modification time of the output, which change whenever anything else writes it.
+     */
+    private static String outputFingerprint(Path output) throws IOException {
+        return Files.size(output) + ":" + Files.getLastModifiedTime(output).toMillis();
+    }
+
+    private static Map<String, String> fingerprints(Path jar) throws IOException {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                fingerprints.put(entry.getName(), Long.toHexString(entry.getCrc()) + ":" + entry.getSize());
+            }
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Returns the supertypes of the classes among the given entries, read from the jar, together with the recorded
+     * supertypes of all other classes that are still in it.
+     */
+    private static Map<String, String> supertypes(Path jar, Set<String> entries, Map<String, String> recorded) throws IOException {
+        Map<String, String> supertypes = new HashMap<>();
+
+        try (RawZipFile zipFile = RawZipFile.open(jar)) {
+            for (RawZipFile.Entry entry : zipFile.entries()) {
+                String name = entry.name();
+                if (!name.endsWith(".class")) continue;
+
+                if (entries.contains(name)) {
+                    supertypes.put(name, readSupertypes(zipFile.read(entry)));
+                } else if (recorded.containsKey(name)) {
+                    supertypes.put(name, recorded.get(name));
+                }
+            }
+        }
+
+        return supertypes;
+    }
+
+    /**
+     * The superclass and interfaces of a class, separated by spaces. Classes that cannot be read have none.
+     */
+    private static String readSupertypes(byte[] classBytes) {
+        try {
+            ClassReader classReader = new ClassReader(classBytes);
+            List<String> supertypes = new ArrayList<>();
+            if (classReader.getSuperName() != null) supertypes.add(classReader.getSuperName());
+            supertypes.addAll(Arrays.asList(classReader.getInterfaces()));
+            return String.join(" ", supertypes);
+        } catch (RuntimeException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Returns the unchanged classes that extend or implement a changed or deleted entry, directly or through other
+     * classes of the jar.
+     */
+    private static Set<String> dependents(Set<String> changed, Set<String> deleted, Set<String> unchanged, Map<String, String> supertypes) {
+        Map<String, List<String>> subtypes = new HashMap<>();
+        supertypes.forEach((entry, types) -> {
+            for (String type : types.split(" ")) {
+                if (!type.isEmpty()) subtypes.computeIfAbsent(type + ".class", key -> new ArrayList<>()).add(entry);
+            }
+        });
+
+        Set<String> dependents = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(changed);
+        queue.addAll(deleted);
+
+        while (!queue.isEmpty()) {
+            for (String subtype : subtypes.getOrDefault(queue.poll(), List.of())) {
+                if (unchanged.contains(subtype) && dependents.add(subtype)) queue.add(subtype);
+            }
+        }
+
+        return dependents;
+    }
+
+    private static Set<String> classes(Set<String> entries) {
+        Set<String> classes = new HashSet<>();
+        for (String entry : entries) {
+            if (entry.endsWith(".class")) classes.add(entry);
+        }
+        return classes;
+    }
+
+    private static void copyEntries(Path input, Path output, Set<String> names) throws IOException {
+        try (RawZipFile zipFile = RawZipFile.open(input);
+             RawZipWriter outputZip = new RawZipWriter(output)) {
+            for (String name : names) {
+                outputZip.copy(zipFile, zipFile.getEntry(name));
+            }
+        }
+    }
+
+    /**
+     * Writes the entries in the same order as a full remap does, see {@link RemapUtil#addNonClassEntries}: the classes
+     * sorted by their output name, followed by all other entries in their input order.
+     */
+    private static void merge(Set<String> entries, Set<String> changed, Path previousOutput, Path changedOutput, Path merged, MappingLookup mappings, RemapOptions options) throws IOException {
+        Map<String, String> classes = new TreeMap<>();
+        List<String> others = new ArrayList<>();
+
+        for (String name : entries) {
+            if (name.endsWith(".class")) {
+                classes.putIfAbsent(outputName(name, mappings), name);
+            } else {
+                others.add(name);
+            }
+        }
+
+        try (RawZipFile previousZip = RawZipFile.open(previousOutput);
+             RawZipFile changedZip = changedOutput != null ? RawZipFile.open(changedOutput) : null;
+             RawZipWriter outputZip = new RawZipWriter(merged, options)) {
+            for (Map.Entry<String, String> entry : classes.entrySet()) {
+                copy(entry.getKey(), changed.contains(entry.getValue()) ? changedZip : previousZip, outputZip);
+            }
+
+            for (String name : others) {
+                copy(name, changed.contains(name) ? changedZip : previousZip, outputZip);
+            }
+        }
+    }
+
+    private static void copy(String outputName, RawZipFile source, RawZipWriter outputZip) throws IOException {
+        RawZipFile.Entry entry = source != null ? source.getEntry(outputName) : null;
+        if (entry != null) outputZip.copy(source, entry);
+    }
+
+    /**
+     * Returns the name TinyRemapper writes an input entry under, which only differs for classes it renames.
+     */
+    private static String outputName(String name, MappingLookup mappings) {
+        if (!name.endsWith(".class")) return name;
+
+        String mapped = mappings.mapClass(name.substring(0, name.length() - ".class".length()));
+        return mapped != null ? mapped + ".class" : name;
+    }
+
+    private static void writeState(Path statePath, String fingerprint, Map<String, String> entries, Map<String, String> supertypes, Path output) throws IOException {
+        Properties state = new Properties();
+        state.setProperty(FINGERPRINT_KEY, fingerprint);
+        state.setProperty(OUTPUT_KEY, outputFingerprint(output));
+        entries.forEach((name, hash) -> state.setProperty(ENTRY_PREFIX + name, hash));
+        supertypes.forEach((name, types) -> state.setProperty(SUPERTYPES_PREFIX + name, types));
+
+        FileUtil.writeProperties(statePath, state);
+    }
+
+    @FunctionalInterface
+    public interface JarRemapper {
+        void remap(Path input, Path classPath, Path output) throws IOException;
+    }
+}
@@ -0,0 +1,216 @@
+package me.mrbubbles.fabricremapper;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Persistent index of the class hierarchy of library jars, used as TinyRemapper's class path.
+ * <p>
+ * TinyRemapper only needs the class headers and member declarations of libraries to resolve inherited members, so
+ * every library jar is indexed once into a stub jar of its classes with all code and debug information stripped.
+ * Stubs are named after the SHA-256 of the library jar, which is itself remembered per path, size and modification
+ * time, so unchanged libraries are neither read nor hashed again on later remaps.
+ * <p>
+ * Once the stubs grow past the size limit, the least recently used ones are deleted. Stubs used in the last few
+ * minutes are kept, since other remaps may still be reading them.
+ */
+public class LibraryIndex {
+
+    private static final String HASHES_FILE = "hashes.properties";
+    private static final String STUB_EXTENSION = ".jar";
+    private static final long MIN_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final long maxSize;
+    private final Object lock;
+
+    public LibraryIndex(Path root) {
+        this(root, Long.MAX_VALUE);
+    }
+
+    public LibraryIndex(Path root, long maxSize) {
+        this.root = root;
+        this.maxSize = maxSize;
+        this.lock = LOCKS.computeIfAbsent(root.toAbsolutePath().normalize(), path -> new Object());
+    }
+
+    /**
+     * Returns the class path to give TinyRemapper for the given libraries: jars are replaced by their stubs, and
+     * directories are kept as they are. Indexes with the same root share one lock, so concurrent remaps do not
+     * overwrite each other's hashes.
+     */
+    public List<Path> resolve(List<Path> libraries) throws IOException {
+        synchronized (lock) {
+            List<Path> classPath = new ArrayList<>(libraries.size());
+            if (libraries.isEmpty()) return classPath;
+
+            Files.createDirectories(root);
+            Properties hashes = readHashes();
+            boolean changed = false;
+
+            for (Path library : libraries) {
+                if (Files.isDirectory(library)) {
+                    classPath.add(library);
+                    continue;
+                }
+
+                if (!Files.isRegularFile(library)) throw new IOException("Library '" + library + "' does not exist");
+
+                String key = library.toAbsolutePath().normalize().toString();
+                String stamp = Files.size(library) + ":" + Files.getLastModifiedTime(library).toMillis();
+                String known = hashes.getProperty(key);
+
+                String hash;
+                if (known != null && known.startsWith(stamp + ":")) {
+                    hash = known.substring(stamp.length() + 1);
+                } else {
+                    hash = MappingsCache.sha256(library);
+                    hashes.setProperty(key, stamp + ":" + hash);
+                    changed = true;
+                }
+
+                Path stub = root.resolve(hash + STUB_EXTENSION);
+                if (Files.isRegularFile(stub)) Files.setLastModifiedTime(stub, FileTime.fromMillis(System.currentTimeMillis()));
+                else writeStub(library, stub);
+
+                classPath.add(stub);
+            }
+
+            if (evict(classPath, hashes)) changed = true;
+            if (changed) writeHashes(hashes);
+            return classPath;
+        }
+    }
+
+    /**
+     * Deletes the least recently used stubs until all stubs fit in the size limit, along with their hashes. Stubs of
+     * the class path being resolved, recently used stubs and stubs that cannot be deleted are kept. Returns whether any
+     * hashes were dropped.
+     */
+    private boolean evict(List<Path> classPath, Properties hashes) throws IOException {
+        if (maxSize == Long.MAX_VALUE) return false;
+
+        List<Path> stubs;
+        try (Stream<Path> stream = Files.list(root)) {
+            stubs = stream.filter(path -> path.getFileName().toString().endsWith(STUB_EXTENSION))
+                    .sorted(Comparator.comparingLong(path -> path.toFile().lastModified())).toList();
+        }
+
+        long total = stubs.stream().mapToLong(path -> path.toFile().length()).sum();
+        long now = System.currentTimeMillis();
+        Set<String> evicted = new HashSet<>();
+
+        for (Path stub : stubs) {
+            if (total <= maxSize) break;
+            if (classPath.contains(stub) || now - stub.toFile().lastModified() < MIN_IDLE_MILLIS) continue;
+
+            long size = stub.toFile().length();
+            try {
+                Files.deleteIfExists(stub);
+            } catch (IOException e) {
+                continue;
+            }
+
+            String name = stub.getFileName().toString();
+            evicted.add(name.substring(0, name.length() - STUB_EXTENSION.length()));
+            total -= size;
+        }
+
+        return !evicted.isEmpty() && hashes.values().removeIf(value -> evicted.contains(value.toString().substring(value.toString().lastIndexOf(':') + 1)));
+    }
+
+    private static void writeStub(Path library, Path stub) throws IOException {
+        Path part = Files.createTempFile(stub.getParent(), "library", ".part");
+
+        try {
+            try {
+                writeRawStub(library, part);
+            } catch (RawZipFile.Zip64Exception e) {
+                writeZip64Stub(library, part);
+            }
+
+            FileUtil.moveAtomically(part, stub);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    private static void writeRawStub(Path library, Path part) throws IOException {
+        // Stubs are stored, since they are read far more often than they are written
+        try (RawZipFile libraryZip = RawZipFile.open(library);
+             RawZipWriter stubZip = new RawZipWriter(part, 0, false, true)) {
+            for (RawZipFile.Entry entry : libraryZip.entries()) {
+                if (!isStubbed(entry.name())) continue;
+
+                stubZip.write(entry.name(), stripClass(libraryZip.read(entry)));
+            }
+        }
+    }
+
+    /**
+     * Writes the stub of a library that is too large for {@link RawZipFile} with the JDK's zip classes, which handle
+     * Zip64 in both directions.
+     */
+    private static void writeZip64Stub(Path library, Path part) throws IOException {
+        try (ZipFile libraryZip = new ZipFile(library.toFile());
+             ZipOutputStream stubZip = new ZipOutputStream(Files.newOutputStream(part))) {
+            Enumeration<? extends ZipEntry> entries = libraryZip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!isStubbed(entry.getName())) continue;
+
+                byte[] stripped;
+                try (InputStream inputStream = libraryZip.getInputStream(entry)) {
+                    stripped = stripClass(inputStream.readAllBytes());
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(stripped);
+
+                ZipEntry stubEntry = new ZipEntry(entry.getName());
+                stubEntry.setMethod(ZipEntry.STORED);
+                stubEntry.setSize(stripped.length);
+                stubEntry.setCrc(crc.getValue());
+                stubEntry.setTime(0);
+
+                stubZip.putNextEntry(stubEntry);
+                stubZip.write(stripped);
+                stubZip.closeEntry();
+            }
+        }
+    }
+
+    private static boolean isStubbed(String name) {
+        return name.endsWith(".class") && !name.startsWith("META-INF/versions/");
+    }
+
+    private static byte[] stripClass(byte[] classBytes) {
+        ClassWriter classWriter = new ClassWriter(0);
+        new ClassReader(classBytes).accept(classWriter, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return classWriter.toByteArray();
+    }
+
+    private Properties readHashes() throws IOException {
+        return FileUtil.readProperties(root.resolve(HASHES_FILE));
+    }
+
+    private void writeHashes(Properties hashes) throws IOException {
+        FileUtil.writeProperties(root.resolve(HASHES_FILE), hashes);
+    }
+}
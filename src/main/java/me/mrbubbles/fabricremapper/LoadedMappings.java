@@ -0,0 +1,165 @@
+package me.mrbubbles.fabricremapper;
+
+import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
+import net.fabricmc.tinyremapper.IMappingProvider;
+import org.gradle.api.logging.Logger;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The mappings of one version, resolved and parsed once so any number of remaps can share them.
+ */
+public class LoadedMappings {
+
+    private static final Logger LOGGER = RemapperPlugin.getLogger();
+
+    private final String version;
+    private final String fingerprint;
+    private final IMappingProvider provider;
+    private final MappingLookup lookup;
+
+    private LoadedMappings(String version, String fingerprint, IMappingProvider provider, MappingLookup lookup) {
+        this.version = version;
+        this.fingerprint = fingerprint;
+        this.provider = provider;
+        this.lookup = lookup;
+    }
+
+    public static LoadedMappings load(String mappingsVersion, MappingsCache cache) {
+        return load(mappingsVersion, YarnDownloading.shared(), cache, null);
+    }
+
+    /**
+     * Loads the mappings, downloading them with the given {@link YarnDownloading} if they are not cached and timing
+     * their download and their parsing as phases of the given metrics, if any.
+     */
+    @SuppressWarnings("try") // The timers are only closed, never used inside their blocks
+    public static LoadedMappings load(String mappingsVersion, YarnDownloading yarnDownloading, MappingsCache cache, RemapMetrics metrics) {
+        Path mappingsJar;
+        try (RemapMetrics.Timer timer = metrics != null ? metrics.time(RemapMetrics.Phase.DOWNLOAD_MAPPINGS, null) : null) {
+            yarnDownloading.prefetch(mappingsVersion, cache);
+            mappingsJar = yarnDownloading.resolveTiny2(mappingsVersion, cache);
+        }
+
+        if (mappingsJar == null) return null;
+
+        try (RemapMetrics.Timer timer = metrics != null ? metrics.time(RemapMetrics.Phase.PARSE_MAPPINGS, null) : null) {
+            // The index only has to be built the first time, otherwise the mappings are read just for TinyRemapper
+            ProviderBuilder provider = new ProviderBuilder();
+            MappingSet.Builder set = cache.contains(mappingsVersion, MappingsIndex.CACHE_KIND, ".idx") ? null : new MappingSet.Builder();
+            TinyV2Reader.readJar(mappingsJar, "intermediary", "named", set != null ? TinyV2Reader.tee(provider, set) : provider);
+
+            Path indexPath = cache.get(mappingsVersion, MappingsIndex.CACHE_KIND, ".idx", target -> {
+                MappingSet.Builder builder = set;
+                if (builder == null) {
+                    // The index was evicted since it was checked
+                    builder = new MappingSet.Builder();
+                    TinyV2Reader.readJar(mappingsJar, "intermediary", "named", builder);
+                }
+
+                MappingsIndex.write(builder.build(), target);
+            });
+
+            return new LoadedMappings(mappingsVersion, mappingsVersion + "/" + indexPath.getFileName(), provider.build(), MappingsIndex.open(indexPath));
+        } catch (IOException e) {
+            LOGGER.error("Error during obtaining Tiny v2 mappings: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Collects the class, field and method mappings for TinyRemapper into flat arrays, and replays them to every
+     * remapper built afterwards instead of reading the mappings again for each of them.
+     * <p>
+     * TinyRemapper expects member descriptors in the source namespace, while Tiny v2 gives them in the first
+     * namespace of the file. They are only remapped when those differ.
+     */
+    private static final class ProviderBuilder implements TinyV2Reader.Visitor {
+        private final List<String> classes = new ArrayList<>();
+        private final List<IMappingProvider.Member> members = new ArrayList<>();
+        private final List<String> memberNames = new ArrayList<>();
+        private final BitSet methods = new BitSet();
+        private final Map<String, String> descClasses = new HashMap<>();
+        private String currentClass;
+
+        @Override
+        public void visitClass(String original, String from, String to) {
+            currentClass = from;
+            if (!original.equals(from)) descClasses.put(original, from);
+            if (!from.equals(to)) {
+                classes.add(from);
+                classes.add(to);
+            }
+        }
+
+        @Override
+        public void visitField(String descriptor, String from, String to) {
+            if (!from.equals(to)) visitMember(false, descriptor, from, to);
+        }
+
+        @Override
+        public void visitMethod(String descriptor, String from, String to) {
+            if (!from.equals(to)) visitMember(true, descriptor, from, to);
+        }
+
+        private void visitMember(boolean method, String descriptor, String from, String to) {
+            if (method) methods.set(members.size());
+            members.add(new IMappingProvider.Member(currentClass, from, descriptor));
+            memberNames.add(to);
+        }
+
+        IMappingProvider build() {
+            if (!descClasses.isEmpty()) {
+                Remapper descRemapper = new Remapper() {
+                    @Override
+                    public String map(String internalName) {
+                        return descClasses.getOrDefault(internalName, internalName);
+                    }
+                };
+
+                for (int i = 0; i < members.size(); i++) {
+                    IMappingProvider.Member member = members.get(i);
+                    String descriptor = methods.get(i) ? descRemapper.mapMethodDesc(member.desc) : descRemapper.mapDesc(member.desc);
+                    members.set(i, new IMappingProvider.Member(member.owner, member.name, descriptor));
+                }
+            }
+
+            String[] classArray = classes.toArray(String[]::new);
+            IMappingProvider.Member[] memberArray = members.toArray(IMappingProvider.Member[]::new);
+            String[] nameArray = memberNames.toArray(String[]::new);
+
+            return out -> {
+                for (int i = 0; i < classArray.length; i += 2) {
+                    out.acceptClass(classArray[i], classArray[i + 1]);
+                }
+
+                for (int i = 0; i < memberArray.length; i++) {
+                    if (methods.get(i)) out.acceptMethod(memberArray[i], nameArray[i]);
+                    else out.acceptField(memberArray[i], nameArray[i]);
+                }
+            };
+        }
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Identifies the exact mappings content, for caches of remapped output.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public IMappingProvider getProvider() {
+        return provider;
+    }
+
+    public MappingLookup getLookup() {
+        return lookup;
+    }
+}
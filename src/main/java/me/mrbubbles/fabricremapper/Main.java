@@ -1,17 +1,19 @@
 package me.mrbubbles.fabricremapper;
 
 import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
-import net.fabricmc.tinyremapper.TinyRemapper;
-import net.fabricmc.tinyremapper.TinyUtils;
 import org.gradle.api.logging.Logger;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -19,6 +21,81 @@ public class Main {
 
     private static final Logger LOGGER = RemapperPlugin.getLogger();
 
+    /**
+     * Command line entry point. {@code --input} may be given several times and may point to a directory of jars, in
+     * which case all jars are remapped as one batch and {@code --output} is the directory they are written to.
+     */
+    public static void main(String[] args) {
+        List<Path> inputs = new ArrayList<>();
+        Path output = null;
+        String minecraftVersion = null;
+        String mappingsVersion = null;
+        RemapOptions options = new RemapOptions();
+        List<Path> classPath = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--offline")) {
+                options.setCache(new MappingsCache(options.getCache().getRoot(), MappingsCache.DEFAULT_MAX_SIZE, true));
+                continue;
+            } else if (args[i].equals("--verbose")) {
+                options.verbose(true);
+                continue;
+            } else if (args[i].equals("--parallelCompression")) {
+                options.parallelCompression(true);
+                continue;
+            } else if (args[i].equals("--reproducible")) {
+                options.reproducible(true);
+                continue;
+            } else if (i + 1 >= args.length) {
+                LOGGER.warn("Missing value for option '" + args[i] + "'");
+                break;
+            }
+
+            String value = args[++i];
+
+            switch (args[i - 1]) {
+                case "--input" -> inputs.add(Paths.get(value));
+                case "--output" -> output = Paths.get(value);
+                case "--minecraftVersion" -> minecraftVersion = value;
+                case "--mappingsVersion" -> mappingsVersion = value;
+                case "--threads" -> options.setThreads(Integer.parseInt(value));
+                case "--renameReport" -> options.setRenameReport(Paths.get(value));
+                case "--metricsReport" -> options.setMetricsReport(Paths.get(value));
+                case "--metadataTtl" -> options.setMetadataTtl(Duration.ofSeconds(Long.parseLong(value)));
+                case "--classpath" -> Arrays.stream(value.split(File.pathSeparator)).map(Paths::get).forEach(classPath::add);
+                case "--compression" -> options.setCompressionLevel(value.equals("store") ? 0 : Integer.parseInt(value));
+                default -> LOGGER.warn("Unknown option '" + args[i - 1] + "'");
+            }
+        }
+
+        options.setClassPath(classPath);
+
+        if (inputs.isEmpty() || output == null) {
+            LOGGER.error("Usage: --input <jar or directory> [--input ...] --output <jar or directory> (--minecraftVersion <version> | --mappingsVersion <version>)");
+            System.exit(1);
+        }
+
+        if (mappingsVersion == null) {
+            if (minecraftVersion == null && isJar(inputs.get(0))) minecraftVersion = getMinecraftVersion(inputs.get(0));
+            if (minecraftVersion == null) {
+                LOGGER.error("Please give a Minecraft or mappings version.");
+                System.exit(1);
+            }
+
+            mappingsVersion = options.getYarnDownloading().getMappingsVersion(minecraftVersion, options.getCache(), options.getMetadataTtl());
+        }
+
+        if (!isValidMappingsVersion(mappingsVersion)) {
+            LOGGER.error("Mappings version '" + mappingsVersion + "' is invalid! Please give a valid mappings version.");
+            System.exit(1);
+        }
+
+        boolean batch = inputs.size() > 1 || Files.isDirectory(inputs.get(0));
+        boolean success = batch ? remapAll(inputs, output, mappingsVersion, options) : remap(inputs.get(0), output, mappingsVersion, options);
+
+        System.exit(success ? 0 : 1);
+    }
+
     public static boolean isPathValid(Path path) {
         try {
             return isPathUsable(path) && Files.exists(path) && Files.isReadable(path) && Files.isRegularFile(path) && Files.size(path) > 0;
@@ -43,71 +120,43 @@ public class Main {
         return mappingsVersion != null && !mappingsVersion.isEmpty() && mappingsVersion.matches("^\\d+\\.\\d+\\.\\d+\\+build\\.\\d+$");
     }
 
-    public static void remap(Path input, Path output, String mappingsVersion, Path tempDir) {
-        if (!isJar(input)) {
-            LOGGER.error("Input is invalid! Please give a valid input.");
-            return;
-        } else if (!isPathUsable(output)) {
-            LOGGER.error("Output is invalid! Please give a valid output.");
-            return;
-        } else if (!isValidMappingsVersion(mappingsVersion)) {
-            LOGGER.error("Mappings version is invalid! Please give a valid mappings version.");
-        }
-
-        Path mappingsPath = YarnDownloading.resolve(mappingsVersion, tempDir);
-        LOGGER.info(String.valueOf(mappingsPath.toAbsolutePath()));
-        String outputName = output.getFileName().toString();
-        int lastIndex = outputName.lastIndexOf('.');
-
-        output = output.resolveSibling(lastIndex == -1 ? outputName + ".jar" : outputName.substring(0, lastIndex) + ".jar");
-
-        if (output.toFile().exists()) output.toFile().delete();
-
-        TinyRemapper remapper = TinyRemapper.newRemapper()
-                .withMappings(TinyUtils.createTinyMappingProvider(mappingsPath, "intermediary", "named"))
-                .renameInvalidLocals(true)
-                .rebuildSourceFilenames(true)
-                .ignoreConflicts(true)
-                .keepInputData(true)
-                .skipLocalVariableMapping(true)
-                .ignoreFieldDesc(true)
-                .build();
-
-        try {
-            OutputConsumerPath outputConsumer = new OutputConsumerPath(output);
-            outputConsumer.addNonClassFiles(input);
-            remapper.readInputs(input);
-
-            remapper.readClassPath(input);
-            remapper.apply(outputConsumer);
-            remapper.finish();
+    public static boolean remap(Path input, Path output, String mappingsVersion) {
+        return remap(input, output, mappingsVersion, new RemapOptions());
+    }
 
-            outputConsumer.close();
-        } catch (IOException e) {
-            LOGGER.error("Error during remapping: " + e.getMessage());
-        }
+    public static boolean remap(Path input, Path output, String mappingsVersion, RemapOptions options) {
+        return execute(input, output, mappingsVersion, options).isSuccess();
+    }
 
-        Path mappingsTiny2 = YarnDownloading.resolveTiny2(mappingsVersion, tempDir);
+    public static boolean remap(Path input, Path output, LoadedMappings mappings, RemapOptions options) {
+        return execute(input, output, mappings, options).isSuccess();
+    }
 
-        try {
-            Map<String, String> mapping = RemapUtil.getMappings(mappingsTiny2);
+    /**
+     * Remaps a jar like {@link #remap(Path, Path, String, RemapOptions)}, but returns the result with the metrics of
+     * the run instead of only whether it succeeded.
+     *
+     * @see RemapEngine
+     */
+    public static RemapResult execute(Path input, Path output, String mappingsVersion, RemapOptions options) {
+        return new RemapEngine(LOGGER, options).remap(input, output, mappingsVersion);
+    }
 
-            RemapUtil.remapJar(output, remapper, mapping);
-        } catch (IOException e) {
-            LOGGER.error("Error during obtaining Tiny v2 mappings: " + e.getMessage());
-        }
+    public static RemapResult execute(Path input, Path output, LoadedMappings mappings, RemapOptions options) {
+        return new RemapEngine(LOGGER, options).remap(input, output, mappings);
+    }
 
-        try {
-            Files.delete(mappingsPath);
-            if (mappingsTiny2 != null) {
-                Files.delete(mappingsTiny2);
-            }
-            Files.delete(YarnDownloading.path);
-        } catch (IOException e) {
-            LOGGER.error("Error during deleting mappings: " + e.getMessage());
-        }
+    /**
+     * Remaps every jar of {@code inputs} into {@code outputDir} in one batch.
+     *
+     * @see RemapEngine#remapAll
+     */
+    public static boolean remapAll(List<Path> inputs, Path outputDir, String mappingsVersion, RemapOptions options) {
+        return executeAll(inputs, outputDir, mappingsVersion, options).isSuccess();
+    }
 
-        LOGGER.info("Finished remapping '" + input.toFile().getName() + "'!");
+    public static RemapResult executeAll(List<Path> inputs, Path outputDir, String mappingsVersion, RemapOptions options) {
+        return new RemapEngine(LOGGER, options).remapAll(inputs, outputDir, mappingsVersion);
     }
 
     public static String getMinecraftVersion(Path jarPath) {
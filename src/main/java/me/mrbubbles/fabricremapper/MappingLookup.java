@@ -0,0 +1,50 @@
+package me.mrbubbles.fabricremapper;
+
+/**
+ * Exact lookups into the Tiny v2 mappings of one mappings version.
+ * <p>
+ * Owners and descriptors are expected in the target namespace, as they appear in classes that already went through
+ * TinyRemapper; only the class or member name itself is still in the source namespace. Every method returns
+ * {@code null} when there is no mapping.
+ */
+public interface MappingLookup {
+
+    String mapClass(String name);
+
+    /**
+     * Maps a field or method identified by its owner, name and descriptor.
+     */
+    String mapMember(String owner, String name, String descriptor);
+
+    /**
+     * Maps a member name regardless of its owner. Only names which map to the same name everywhere are known here,
+     * which is the case for intermediary names.
+     */
+    String mapName(String name);
+
+    /**
+     * Maps a member, falling back to {@link #mapName} for references whose owner is a subclass the mappings do not
+     * know about.
+     */
+    default String mapMemberOrName(String owner, String name, String descriptor) {
+        String mapped = mapMember(owner, name, descriptor);
+        return mapped != null ? mapped : mapName(name);
+    }
+
+    /**
+     * Whether a class or member name of the source namespace might equal the given modified UTF-8 string, read as it
+     * is stored in a class file, with dots taken as slashes. There can be false positives but no false negatives, and
+     * lookups that cannot tell always return {@code true}.
+     */
+    default boolean mightContainName(byte[] utf8, int offset, int length) {
+        return true;
+    }
+
+    static boolean isIntermediaryName(String name) {
+        return name.startsWith("method_") || name.startsWith("field_") || name.startsWith("comp_");
+    }
+
+    static String memberKey(String owner, String name, String descriptor) {
+        return owner + '.' + name + ';' + descriptor;
+    }
+}
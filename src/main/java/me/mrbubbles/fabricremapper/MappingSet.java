@@ -0,0 +1,118 @@
+package me.mrbubbles.fabricremapper;
+
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * In-memory mappings parsed from a Tiny v2 file, used to build a {@link MappingsIndex}.
+ */
+public class MappingSet implements MappingLookup {
+
+    private final Map<String, String> classes = new HashMap<>();
+    private final Map<String, String> members = new HashMap<>();
+    private final Map<String, String> names = new HashMap<>();
+
+    public static MappingSet read(Path path, String from, String to) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            return read(reader, from, to);
+        }
+    }
+
+    public static MappingSet read(BufferedReader reader, String from, String to) throws IOException {
+        Builder builder = new Builder();
+        TinyV2Reader.read(reader, from, to, builder);
+        return builder.build();
+    }
+
+    /**
+     * Collects the mappings from a {@link TinyV2Reader}. Member descriptors can refer to classes that come later in
+     * the file, so they are only remapped once everything is read.
+     */
+    static final class Builder implements TinyV2Reader.Visitor {
+        private final Map<String, String> descClasses = new HashMap<>();
+        private final List<String[]> rawMembers = new ArrayList<>();
+        private final MappingSet set = new MappingSet();
+        private String currentClass;
+
+        @Override
+        public void visitClass(String original, String from, String to) {
+            currentClass = to;
+            descClasses.put(original, to);
+            if (!from.equals(to)) set.classes.put(from, to);
+        }
+
+        @Override
+        public void visitField(String descriptor, String from, String to) {
+            visitMember(descriptor, from, to);
+        }
+
+        @Override
+        public void visitMethod(String descriptor, String from, String to) {
+            visitMember(descriptor, from, to);
+        }
+
+        private void visitMember(String descriptor, String from, String to) {
+            if (from.equals(to) || from.startsWith("<")) return;
+
+            rawMembers.add(new String[]{currentClass, from, descriptor, to});
+        }
+
+        MappingSet build() {
+            Remapper descRemapper = new Remapper() {
+                @Override
+                public String map(String internalName) {
+                    return descClasses.getOrDefault(internalName, internalName);
+                }
+            };
+
+            Set<String> conflicts = new HashSet<>();
+            for (String[] member : rawMembers) {
+                String descriptor = member[2].startsWith("(") ? descRemapper.mapMethodDesc(member[2]) : descRemapper.mapDesc(member[2]);
+                set.members.put(MappingLookup.memberKey(member[0], member[1], descriptor), member[3]);
+
+                if (conflicts.contains(member[1])) continue;
+                String previous = set.names.putIfAbsent(member[1], member[3]);
+                if (previous != null && !previous.equals(member[3])) {
+                    set.names.remove(member[1]);
+                    conflicts.add(member[1]);
+                }
+            }
+
+            return set;
+        }
+    }
+
+    Map<String, String> getClasses() {
+        return classes;
+    }
+
+    Map<String, String> getMembers() {
+        return members;
+    }
+
+    Map<String, String> getNames() {
+        return names;
+    }
+
+    @Override
+    public String mapClass(String name) {
+        return classes.get(name);
+    }
+
+    @Override
+    public String mapMember(String owner, String name, String descriptor) {
+        return members.get(MappingLookup.memberKey(owner, name, descriptor));
+    }
+
+    @Override
+    public String mapName(String name) {
+        return names.get(name);
+    }
+}
@@ -0,0 +1,295 @@
+package me.mrbubbles.fabricremapper;
+
+import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
+import org.gradle.api.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Persistent on-disk store for downloaded mappings, shared between remaps.
+ * <p>
+ * Every mappings version gets its own entry directory. Files inside it are named after the SHA-256 of their
+ * content and an {@code entry.properties} index maps each kind of mappings to its checksum, so an entry is
+ * only ever served once it has been completely and atomically written. Entries are evicted least recently used
+ * first once the cache grows past its size limit.
+ * <p>
+ * Every entry directory has one lock, shared by all instances, so remaps running at the same time in one JVM never
+ * read an index while another one rewrites it, and wait for one fetch of the same mappings instead of each fetching
+ * them. Fetches of different mappings run in parallel. Eviction skips entries that are being fetched, and leaves files
+ * it cannot delete, like an index that is still memory-mapped on Windows, for a later eviction.
+ */
+public class MappingsCache {
+
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private static final String INDEX_FILE = "entry.properties";
+    private static final String DOWNLOADS_DIR = ".downloads";
+    private static final String METADATA_DIR = ".metadata";
+    private static final String LIBRARIES_DIR = ".libraries";
+
+    private static final Logger LOGGER = RemapperPlugin.getLogger();
+
+    private static final Map<Path, Object> EVICTION_LOCKS = new ConcurrentHashMap<>();
+    private static final Map<Path, ReentrantLock> ENTRY_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final long maxSize;
+    private final boolean offline;
+    private final Object evictionLock;
+
+    public MappingsCache(Path root, long maxSize, boolean offline) {
+        this.root = root;
+        this.maxSize = maxSize;
+        this.offline = offline;
+        this.evictionLock = EVICTION_LOCKS.computeIfAbsent(root.toAbsolutePath().normalize(), path -> new Object());
+    }
+
+    public static MappingsCache defaultCache() {
+        return new MappingsCache(Paths.get(System.getProperty("user.home"), ".fabric-remapper", "mappings"), DEFAULT_MAX_SIZE, false);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Staging directory for downloads in progress, kept across runs so interrupted downloads can be resumed.
+     */
+    public Path getDownloadsDir() {
+        return root.resolve(DOWNLOADS_DIR);
+    }
+
+    /**
+     * Directory for cached version metadata, which is refreshed by its own TTL instead of being evicted.
+     */
+    public Path getMetadataDir() {
+        return root.resolve(METADATA_DIR);
+    }
+
+    /**
+     * Directory of the {@link LibraryIndex}, whose stubs are keyed by content and so never go stale. The index evicts
+     * them itself, under the same size limit as the mappings.
+     */
+    public Path getLibrariesDir() {
+        return root.resolve(LIBRARIES_DIR);
+    }
+
+    public boolean contains(String mappingsVersion, String kind, String extension) throws IOException {
+        Path entryDir = root.resolve(sanitize(mappingsVersion));
+        ReentrantLock entryLock = entryLock(entryDir);
+
+        entryLock.lock();
+        try {
+            return lookup(entryDir, readIndex(entryDir), kind, extension) != null;
+        } finally {
+            entryLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached file of the given kind for a mappings version, calling the fetcher to produce it first if
+     * it is not cached yet. The fetcher writes into a temporary file which is only moved into place once complete.
+     */
+    public Path get(String mappingsVersion, String kind, String extension, Fetcher fetcher) throws IOException {
+        Path entryDir = root.resolve(sanitize(mappingsVersion));
+        ReentrantLock entryLock = entryLock(entryDir);
+
+        entryLock.lock();
+        try {
+            Properties index = readIndex(entryDir);
+
+            Path cached = lookup(entryDir, index, kind, extension);
+            if (cached != null) {
+                Files.setLastModifiedTime(entryDir, FileTime.fromMillis(System.currentTimeMillis()));
+                return cached;
+            }
+
+            if (offline) {
+                throw new IOException("Mappings '" + mappingsVersion + "' (" + kind + ") are not cached and offline mode is enabled");
+            }
+
+            Files.createDirectories(entryDir);
+            Path part = Files.createTempFile(entryDir, kind, ".part");
+
+            try {
+                fetcher.fetch(part);
+
+                String checksum = sha256(part);
+                Path target = entryDir.resolve(checksum + extension);
+                FileUtil.moveAtomically(part, target);
+
+                index.setProperty(kind, checksum);
+                index.setProperty(kind + ".size", String.valueOf(Files.size(target)));
+                writeIndex(entryDir, index);
+
+                evict(entryDir);
+                return target;
+            } catch (Exception e) {
+                Files.deleteIfExists(part);
+                throw e instanceof IOException ioException ? ioException : new IOException(e);
+            }
+        } finally {
+            entryLock.unlock();
+        }
+    }
+
+    private static ReentrantLock entryLock(Path entryDir) {
+        return ENTRY_LOCKS.computeIfAbsent(entryDir.toAbsolutePath().normalize(), path -> new ReentrantLock());
+    }
+
+    private static Path lookup(Path entryDir, Properties index, String kind, String extension) throws IOException {
+        String checksum = index.getProperty(kind);
+        if (checksum == null) return null;
+
+        Path cached = entryDir.resolve(checksum + extension);
+        return Files.isRegularFile(cached) && String.valueOf(Files.size(cached)).equals(index.getProperty(kind + ".size")) ? cached : null;
+    }
+
+    private void evict(Path keep) throws IOException {
+        synchronized (evictionLock) {
+            if (Files.isDirectory(root)) evictUnlocked(keep);
+        }
+    }
+
+    private void evictUnlocked(Path keep) throws IOException {
+        List<Path> entries;
+        try (Stream<Path> stream = Files.list(root)) {
+            entries = stream.filter(Files::isDirectory)
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .sorted(Comparator.comparing(MappingsCache::lastModified)).toList();
+        }
+
+        Map<Path, Long> sizes = new HashMap<>();
+        long total = 0;
+        for (Path entry : entries) {
+            long size = sizeOf(entry);
+            sizes.put(entry, size);
+            total += size;
+        }
+
+        for (Path entry : entries) {
+            if (total <= maxSize) break;
+            if (entry.equals(keep)) continue;
+
+            // An entry that is locked is being fetched or read right now
+            ReentrantLock entryLock = entryLock(entry);
+            if (!entryLock.tryLock()) continue;
+
+            try {
+                if (deleteEntry(entry)) total -= sizes.get(entry);
+            } finally {
+                entryLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Deletes an evicted entry, keeping its index and directory if any of its files cannot be deleted. The index then
+     * still serves the files that are left, as every lookup checks that the file is complete.
+     */
+    private static boolean deleteEntry(Path entryDir) {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(entryDir)) {
+            files = stream.filter(path -> !path.getFileName().toString().equals(INDEX_FILE)).toList();
+        } catch (IOException e) {
+            return false;
+        }
+
+        boolean complete = true;
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOGGER.info("Could not evict '" + file + "' from the mappings cache, it may still be in use: " + e.getMessage());
+                complete = false;
+            }
+        }
+
+        if (!complete) return false;
+
+        try {
+            Files.deleteIfExists(entryDir.resolve(INDEX_FILE));
+            Files.deleteIfExists(entryDir);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Properties readIndex(Path entryDir) throws IOException {
+        return FileUtil.readProperties(entryDir.resolve(INDEX_FILE));
+    }
+
+    private static void writeIndex(Path entryDir, Properties index) throws IOException {
+        FileUtil.writeProperties(entryDir.resolve(INDEX_FILE), index);
+    }
+
+    static String sha256(Path path) throws IOException {
+        return digest(path, "SHA-256");
+    }
+
+    static String digest(Path path, String algorithm) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static String sanitize(String mappingsVersion) {
+        return mappingsVersion.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * The size of an entry, counting files that are removed while it is measured as empty, since other entries are
+     * being fetched at the same time.
+     */
+    private static long sizeOf(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.mapToLong(path -> path.toFile().length()).sum();
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Fetcher {
+        void fetch(Path target) throws Exception;
+    }
+}
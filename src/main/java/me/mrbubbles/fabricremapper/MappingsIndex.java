@@ -0,0 +1,251 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only, memory-mapped view of the Tiny v2 mappings of one mappings version.
+ * <p>
+ * The file starts with a header ({@code magic, version, poolOffset}) followed by three tables for classes, members
+ * and owner-less names. Each table is described by {@code slotCount, slotsOffset, entriesOffset} and consists of an
+ * open-addressing hash table of {@code slotCount} ints pointing at entries of four ints
+ * ({@code keyStart, keyLength, valueStart, valueLength}). Keys and values point into a pool of deduplicated UTF-16
+ * strings. Member keys are {@code owner.name;descriptor}; lookups hash and compare those parts straight against the
+ * mapped buffer, so a miss allocates nothing and only a hit decodes its value.
+ * <p>
+ * After the tables, described by {@code filterOffset, filterWords} at the end of the header, comes a
+ * {@link NameFilter} of all source class and member names, used to skip classes that reference none of them.
+ */
+public class MappingsIndex implements MappingLookup {
+
+    public static final String CACHE_KIND = "index-v3";
+
+    private static final int MAGIC = 0x46524D49;
+    private static final int FORMAT_VERSION = 3;
+    private static final int TABLES = 3;
+    private static final int FILTER_HEADER = 12 + TABLES * 12;
+    private static final int HEADER_SIZE = FILTER_HEADER + 8;
+    private static final int ENTRY_SIZE = 16;
+
+    private static final int CLASSES = 0;
+    private static final int MEMBERS = 1;
+    private static final int NAMES = 2;
+
+    private final MappedByteBuffer buffer;
+    private final int poolOffset;
+    private final int filterOffset;
+    private final int filterWords;
+
+    private MappingsIndex(MappedByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not a mappings index or an unsupported index version");
+        }
+
+        this.buffer = buffer;
+        this.poolOffset = buffer.getInt(8);
+        this.filterOffset = buffer.getInt(FILTER_HEADER);
+        this.filterWords = buffer.getInt(FILTER_HEADER + 4);
+    }
+
+    public static MappingsIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappingsIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static void write(MappingSet mappings, Path path) throws IOException {
+        List<Map<String, String>> tables = List.of(mappings.getClasses(), mappings.getMembers(), mappings.getNames());
+        Map<String, Integer> pool = new LinkedHashMap<>();
+        int[] poolLength = {0};
+
+        int offset = HEADER_SIZE;
+        int[][] slots = new int[TABLES][];
+        int[][] entries = new int[TABLES][];
+        int[] slotsOffsets = new int[TABLES];
+        int[] entriesOffsets = new int[TABLES];
+
+        for (int table = 0; table < TABLES; table++) {
+            Map<String, String> map = tables.get(table);
+            int slotCount = Integer.highestOneBit(Math.max(1, map.size()) * 2 - 1) << 1;
+            slots[table] = new int[slotCount];
+            entries[table] = new int[map.size() * 4];
+
+            int index = 0;
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                entries[table][index * 4] = intern(pool, poolLength, entry.getKey());
+                entries[table][index * 4 + 1] = entry.getKey().length();
+                entries[table][index * 4 + 2] = intern(pool, poolLength, entry.getValue());
+                entries[table][index * 4 + 3] = entry.getValue().length();
+
+                int slot = mix(entry.getKey().hashCode()) & (slotCount - 1);
+                while (slots[table][slot] != 0) slot = (slot + 1) & (slotCount - 1);
+                slots[table][slot] = index + 1;
+                index++;
+            }
+
+            slotsOffsets[table] = offset;
+            offset += slotCount * 4;
+            entriesOffsets[table] = offset;
+            offset += entries[table].length * 4;
+        }
+
+        long[] filter = NameFilter.build(sourceNames(mappings));
+        int filterOffset = offset;
+        offset += filter.length * 8;
+
+        try (OutputStream outputStream = Files.newOutputStream(path);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(offset);
+
+            for (int table = 0; table < TABLES; table++) {
+                output.writeInt(slots[table].length);
+                output.writeInt(slotsOffsets[table]);
+                output.writeInt(entriesOffsets[table]);
+            }
+
+            output.writeInt(filterOffset);
+            output.writeInt(filter.length);
+
+            for (int table = 0; table < TABLES; table++) {
+                for (int value : slots[table]) output.writeInt(value);
+                for (int value : entries[table]) output.writeInt(value);
+            }
+
+            for (long word : filter) output.writeLong(word);
+
+            for (String string : pool.keySet()) {
+                output.writeChars(string);
+            }
+        }
+    }
+
+    /**
+     * The class names and the member names of the source namespace, the latter taken from the member keys since
+     * names with conflicting mappings are left out of the names table.
+     */
+    private static Set<String> sourceNames(MappingSet mappings) {
+        Set<String> names = new HashSet<>(mappings.getClasses().keySet());
+        names.addAll(mappings.getNames().keySet());
+
+        for (String key : mappings.getMembers().keySet()) {
+            int nameStart = key.indexOf('.') + 1;
+            names.add(key.substring(nameStart, key.indexOf(';', nameStart)));
+        }
+
+        return names;
+    }
+
+    private static int intern(Map<String, Integer> pool, int[] poolLength, String string) {
+        Integer start = pool.get(string);
+        if (start != null) return start;
+
+        pool.put(string, poolLength[0]);
+        poolLength[0] += string.length();
+        return poolLength[0] - string.length();
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(int hash, String string) {
+        for (int i = 0; i < string.length(); i++) {
+            hash = 31 * hash + string.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Finds the entry whose key is {@code owner.name;descriptor}, leaving out {@code owner} and {@code descriptor}
+     * when they are null. Returns the offset of the entry, or -1 if there is none.
+     */
+    private int find(int table, String owner, String name, String descriptor) {
+        int hash = 0;
+        if (owner != null) hash = 31 * hash(hash, owner) + '.';
+        hash = hash(hash, name);
+        if (descriptor != null) hash = hash(31 * hash + ';', descriptor);
+
+        int header = 12 + table * 12;
+        int slotCount = buffer.getInt(header);
+        int slotsOffset = buffer.getInt(header + 4);
+        int entriesOffset = buffer.getInt(header + 8);
+
+        int slot = mix(hash) & (slotCount - 1);
+        int index;
+        while ((index = buffer.getInt(slotsOffset + slot * 4)) != 0) {
+            int entry = entriesOffset + (index - 1) * ENTRY_SIZE;
+            if (matches(buffer.getInt(entry), buffer.getInt(entry + 4), owner, name, descriptor)) return entry;
+
+            slot = (slot + 1) & (slotCount - 1);
+        }
+
+        return -1;
+    }
+
+    private boolean matches(int start, int length, String owner, String name, String descriptor) {
+        int expected = name.length() + (owner != null ? owner.length() + 1 : 0) + (descriptor != null ? descriptor.length() + 1 : 0);
+        if (length != expected) return false;
+
+        int position = poolOffset + start * 2;
+        if (owner != null) {
+            if (!matches(position, owner) || buffer.getChar(position + owner.length() * 2) != '.') return false;
+            position += (owner.length() + 1) * 2;
+        }
+
+        if (!matches(position, name)) return false;
+        position += name.length() * 2;
+
+        return descriptor == null || buffer.getChar(position) == ';' && matches(position + 2, descriptor);
+    }
+
+    private boolean matches(int position, String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (buffer.getChar(position + i * 2) != string.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String value(int entry) {
+        if (entry < 0) return null;
+
+        int length = buffer.getInt(entry + 12);
+        int position = poolOffset + buffer.getInt(entry + 8) * 2;
+        char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(position + i * 2);
+        }
+
+        return new String(chars);
+    }
+
+    @Override
+    public String mapClass(String name) {
+        return value(find(CLASSES, null, name, null));
+    }
+
+    @Override
+    public String mapMember(String owner, String name, String descriptor) {
+        return value(find(MEMBERS, owner, name, descriptor));
+    }
+
+    @Override
+    public String mapName(String name) {
+        return value(find(NAMES, null, name, null));
+    }
+
+    @Override
+    public boolean mightContainName(byte[] utf8, int offset, int length) {
+        return NameFilter.mightContain(buffer, filterOffset, filterWords, utf8, offset, length);
+    }
+}
@@ -0,0 +1,98 @@
+package me.mrbubbles.fabricremapper;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * Bloom filter over the source names of the mappings, stored as an array of longs in the {@link MappingsIndex}.
+ * <p>
+ * Names are hashed as the modified UTF-8 bytes they are stored as in class files, so constant pool entries can be
+ * checked straight from the raw class bytes without decoding them. Dots hash like slashes, so binary class names in
+ * string constants are found too. At ten bits per name and seven hashes, about one in a hundred names that are not
+ * in the mappings is still reported as a possible match.
+ */
+final class NameFilter {
+
+    private static final int HASHES = 7;
+    private static final int BITS_PER_NAME = 10;
+
+    private NameFilter() {
+    }
+
+    static long[] build(Collection<String> names) {
+        long[] words = new long[(int) Math.max(1, ((long) names.size() * BITS_PER_NAME + 63) / 64)];
+        long bitCount = words.length * 64L;
+
+        for (String name : names) {
+            long hash = hash(name);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = bit(hash, i, bitCount);
+                words[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Checks a name against a filter of {@code wordCount} longs stored at {@code offset} in the buffer.
+     */
+    static boolean mightContain(ByteBuffer buffer, int offset, int wordCount, byte[] bytes, int start, int length) {
+        long hash = hash(bytes, start, length);
+        long bitCount = wordCount * 64L;
+
+        for (int i = 0; i < HASHES; i++) {
+            long bit = bit(hash, i, bitCount);
+            if ((buffer.getLong(offset + (int) (bit >>> 6) * 8) & (1L << bit)) == 0) return false;
+        }
+
+        return true;
+    }
+
+    private static long bit(long hash, int i, long bitCount) {
+        return Integer.toUnsignedLong((int) hash + i * (int) (hash >>> 32)) % bitCount;
+    }
+
+    private static long hash(byte[] bytes, int start, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < start + length; i++) {
+            hash = update(hash, bytes[i]);
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Hashes the modified UTF-8 encoding of a string, without encoding it.
+     */
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != 0 && c < 0x80) {
+                hash = update(hash, (byte) c);
+            } else if (c < 0x800) {
+                hash = update(hash, (byte) (0xC0 | c >> 6));
+                hash = update(hash, (byte) (0x80 | c & 0x3F));
+            } else {
+                hash = update(hash, (byte) (0xE0 | c >> 12));
+                hash = update(hash, (byte) (0x80 | c >> 6 & 0x3F));
+                hash = update(hash, (byte) (0x80 | c & 0x3F));
+            }
+        }
+
+        return finish(hash);
+    }
+
+    private static long update(long hash, byte b) {
+        return (hash ^ (b == '.' ? '/' : b & 0xFF)) * 0x100000001b3L;
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+    }
+}
@@ -0,0 +1,220 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read access to a jar at the level of its central directory. Entries can be copied to a {@link RawZipWriter} as
+ * their compressed bytes, without being inflated and deflated again, or read and inflated like with a
+ * {@link java.util.zip.ZipFile}. Zip64 archives are not supported and are rejected with a {@link Zip64Exception}.
+ */
+final class RawZipFile implements Closeable {
+
+    static final int LOCAL_HEADER = 0x04034b50;
+    static final int CENTRAL_HEADER = 0x02014b50;
+    static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private final FileChannel channel;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName;
+
+    private RawZipFile(FileChannel channel, List<Entry> entries) {
+        this.channel = channel;
+        this.entries = entries;
+        this.entriesByName = new HashMap<>();
+
+        for (Entry entry : entries) {
+            entriesByName.putIfAbsent(entry.name(), entry);
+        }
+    }
+
+    static RawZipFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            return new RawZipFile(channel, readCentralDirectory(channel, path));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * All entries, in the order of the central directory.
+     */
+    List<Entry> entries() {
+        return entries;
+    }
+
+    Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Reads and inflates the content of an entry.
+     */
+    byte[] read(Entry entry) throws IOException {
+        byte[] compressed = new byte[Math.toIntExact(entry.compressedSize())];
+        readFully(ByteBuffer.wrap(compressed), dataOffset(entry));
+
+        if (entry.method() == ZipEntry.STORED) return compressed;
+        if (entry.method() != ZipEntry.DEFLATED) throw new ZipException("Unsupported compression method " + entry.method() + " of " + entry.name());
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+
+            byte[] content = new byte[Math.toIntExact(entry.size())];
+            int length = 0;
+            while (length < content.length) {
+                int inflated = inflater.inflate(content, length, content.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) break;
+                length += inflated;
+            }
+
+            if (length != content.length) throw new ZipException("Truncated entry " + entry.name());
+            return content;
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt entry " + entry.name() + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Copies the compressed bytes of an entry to the target channel.
+     */
+    void transferTo(Entry entry, WritableByteChannel target) throws IOException {
+        long position = dataOffset(entry);
+        long remaining = entry.compressedSize();
+
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) throw new ZipException("Unexpected end of " + entry.name());
+
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private long dataOffset(Entry entry) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, entry.localHeaderOffset());
+
+        if (header.getInt(0) != LOCAL_HEADER) throw new ZipException("Invalid local header of " + entry.name());
+
+        return entry.localHeaderOffset() + LOCAL_HEADER_SIZE + Short.toUnsignedInt(header.getShort(26)) + Short.toUnsignedInt(header.getShort(28));
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        readFully(channel, buffer, position);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new ZipException("Unexpected end of archive");
+            position += read;
+        }
+    }
+
+    private static List<Entry> readCentralDirectory(FileChannel channel, Path path) throws IOException {
+        long size = channel.size();
+        int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+
+        ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, tail, size - tailSize);
+
+        int end = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end == -1) throw new ZipException("Not a zip file: " + path);
+
+        int count = Short.toUnsignedInt(tail.getShort(end + 10));
+        long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+
+        if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) throw new Zip64Exception(path);
+
+        ByteBuffer directory = ByteBuffer.allocate(Math.toIntExact(directorySize)).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, directory, directoryOffset);
+
+        List<Entry> entries = new ArrayList<>(count);
+        int position = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_HEADER_SIZE > directory.limit() || directory.getInt(position) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory of " + path);
+            }
+
+            int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+
+            String name = new String(directory.array(), position + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            long compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+            long entrySize = Integer.toUnsignedLong(directory.getInt(position + 24));
+            long localHeaderOffset = Integer.toUnsignedLong(directory.getInt(position + 42));
+
+            // Any of these at their maximum means the real value is in a Zip64 extra field
+            if (compressedSize == 0xFFFFFFFFL || entrySize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) throw new Zip64Exception(path);
+
+            entries.add(new Entry(name,
+                    Short.toUnsignedInt(directory.getShort(position + 8)),
+                    Short.toUnsignedInt(directory.getShort(position + 10)),
+                    directory.getInt(position + 12),
+                    directory.getInt(position + 16),
+                    compressedSize,
+                    entrySize,
+                    localHeaderOffset));
+
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * An entry as described by the central directory. {@code dosTime} holds the DOS time in its low and the DOS date
+     * in its high 16 bits.
+     */
+    record Entry(String name, int flags, int method, int dosTime, int crc, long compressedSize, long size, long localHeaderOffset) {
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    static final class Zip64Exception extends ZipException {
+        private static final long serialVersionUID = 1L;
+
+        Zip64Exception(Path path) {
+            super("Zip64 archives are not supported: " + path);
+        }
+    }
+}
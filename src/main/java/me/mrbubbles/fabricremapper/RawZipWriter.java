@@ -0,0 +1,306 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a jar whose entries are either copied compressed from a {@link RawZipFile} or compressed from new content.
+ * Sizes and checksums are always known up front, so no data descriptors are written.
+ * <p>
+ * New entries are deflated at the configured level, or stored at level 0. Copied entries keep their compression,
+ * except that deflated ones are inflated and stored when storing is requested. In parallel mode, large entries are
+ * deflated in blocks on the remap's executor, or on a pool of the configured number of threads owned by the writer,
+ * each block primed with the end of the one before it as its dictionary. A reproducible writer gives every entry
+ * the same fixed timestamp. A writer with a {@link RemapMonitor} reports every entry to it once the entry is written.
+ */
+final class RawZipWriter implements Closeable {
+
+    private static final int VERSION = 20;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x8;
+    private static final int UTF8_FLAG = 0x800;
+
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    // The same constant Gradle uses for reproducible archives, which stays valid in every time zone
+    private static final int FIXED_DOS_TIME = dosTime(LocalDateTime.of(1980, 2, 1, 0, 0));
+
+    private final FileChannel channel;
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final int level;
+    private final boolean parallel;
+    private final boolean reproducible;
+    private final RemapMonitor monitor;
+    private final ExecutorService executor;
+    private final ExecutorService ownedExecutor;
+    private int count;
+
+    RawZipWriter(Path path) throws IOException {
+        this(path, Deflater.DEFAULT_COMPRESSION, false, false);
+    }
+
+    RawZipWriter(Path path, RemapOptions options) throws IOException {
+        this(path, options, null);
+    }
+
+    RawZipWriter(Path path, RemapOptions options, RemapMonitor monitor) throws IOException {
+        this(path, options, null, monitor);
+    }
+
+    /**
+     * Deflates blocks of large entries on the given executor, which may be null to use a pool of its own.
+     */
+    RawZipWriter(Path path, RemapOptions options, ExecutorService executor, RemapMonitor monitor) throws IOException {
+        this(path, options.getCompressionLevel(), options.isParallelCompression(), options.isReproducible(), options.getThreads(), executor, monitor);
+    }
+
+    RawZipWriter(Path path, int level, boolean parallel, boolean reproducible) throws IOException {
+        this(path, level, parallel, reproducible, Runtime.getRuntime().availableProcessors(), null, null);
+    }
+
+    private RawZipWriter(Path path, int level, boolean parallel, boolean reproducible, int threads, ExecutorService executor,
+                         RemapMonitor monitor) throws IOException {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) throw new IllegalArgumentException("Invalid compression level " + level);
+
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.level = level;
+        this.parallel = parallel;
+        this.reproducible = reproducible;
+        this.monitor = monitor;
+        this.ownedExecutor = parallel && executor == null ? createExecutor(threads) : null;
+        this.executor = executor != null ? executor : ownedExecutor;
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "fabric-remapper-deflate-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Copies an entry without inflating it, unless it has to be stored.
+     */
+    void copy(RawZipFile source, RawZipFile.Entry entry) throws IOException {
+        int dosTime = reproducible ? FIXED_DOS_TIME : entry.dosTime();
+        long start = channel.position();
+
+        if (level == Deflater.NO_COMPRESSION && entry.method() != ZipEntry.STORED) {
+            write(entry.name(), compress(source.read(entry)), dosTime);
+        } else {
+            byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+            int flags = entry.flags() & ~DATA_DESCRIPTOR_FLAG;
+
+            writeHeaders(name, flags, entry.method(), dosTime, entry.crc(), entry.compressedSize(), entry.size());
+            source.transferTo(entry, channel);
+        }
+
+        if (monitor != null) monitor.entryWritten(channel.position() - start);
+    }
+
+    void write(String entryName, byte[] content) throws IOException {
+        write(entryName, compress(content));
+    }
+
+    /**
+     * Writes content that was compressed up front, possibly on another thread.
+     */
+    void write(String entryName, Compressed content) throws IOException {
+        long start = channel.position();
+        write(entryName, content, reproducible ? FIXED_DOS_TIME : dosTime(LocalDateTime.now()));
+
+        if (monitor != null) monitor.entryWritten(channel.position() - start);
+    }
+
+    private void write(String entryName, Compressed content, int dosTime) throws IOException {
+        byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        int flags = entryName.chars().anyMatch(c -> c >= 0x80) ? UTF8_FLAG : 0;
+
+        writeHeaders(name, flags, content.method(), dosTime, content.crc(), content.data().length, content.size());
+        writeFully(ByteBuffer.wrap(content.data()));
+    }
+
+    /**
+     * Compresses content with this writer's settings. Safe to call from any thread.
+     */
+    Compressed compress(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        if (level == Deflater.NO_COMPRESSION) return new Compressed(content, ZipEntry.STORED, (int) crc.getValue(), content.length);
+
+        byte[] data = parallel && content.length > 2 * BLOCK_SIZE ? deflateBlocks(content) : deflate(content, 0, content.length, 0, true);
+        return new Compressed(data, ZipEntry.DEFLATED, (int) crc.getValue(), content.length);
+    }
+
+    private byte[] deflateBlocks(byte[] content) {
+        List<FutureTask<byte[]>> blocks = new ArrayList<>();
+
+        for (int start = 0; start < content.length; start += BLOCK_SIZE) {
+            int offset = start;
+            int length = Math.min(BLOCK_SIZE, content.length - start);
+            boolean last = offset + length == content.length;
+
+            FutureTask<byte[]> block = new FutureTask<>(() -> deflate(content, offset, length, Math.min(DICTIONARY_SIZE, offset), last));
+            blocks.add(block);
+            executor.execute(block);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(content.length / 2);
+        for (FutureTask<byte[]> block : blocks) {
+            // Blocks no worker has picked up yet are deflated right here, as this may be a worker of the same executor
+            block.run();
+            output.writeBytes(join(block));
+        }
+
+        return output.toByteArray();
+    }
+
+    private static byte[] join(FutureTask<byte[]> block) {
+        try {
+            return block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while deflating");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Deflates one block of the content. Blocks other than the last end with a sync flush instead of the final
+     * block, so the raw deflate streams of all blocks can be concatenated into one.
+     */
+    private byte[] deflate(byte[] content, int offset, int length, int dictionaryLength, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+
+        try {
+            if (dictionaryLength > 0) deflater.setDictionary(content, offset - dictionaryLength, dictionaryLength);
+            deflater.setInput(content, offset, length);
+            if (last) deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] buffer = new byte[64 * 1024];
+
+            if (last) {
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int deflated;
+                do {
+                    deflated = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, deflated);
+                } while (deflated == buffer.length);
+            }
+
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeHeaders(byte[] name, int flags, int method, int dosTime, int crc, long compressedSize, long size) throws IOException {
+        long offset = channel.position();
+        if (offset > 0xFFFFFFFFL || compressedSize > 0xFFFFFFFFL || size > 0xFFFFFFFFL || count == 0xFFFF) {
+            throw new ZipException("Jar is too large to be written without Zip64");
+        }
+
+        ByteBuffer local = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(RawZipFile.LOCAL_HEADER)
+                .putShort((short) VERSION)
+                .putShort((short) flags)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt(crc)
+                .putInt((int) compressedSize)
+                .putInt((int) size)
+                .putShort((short) name.length)
+                .putShort((short) 0)
+                .put(name);
+        writeFully(local.flip());
+
+        ByteBuffer central = ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(RawZipFile.CENTRAL_HEADER)
+                .putShort((short) VERSION)
+                .putShort((short) VERSION)
+                .putShort((short) flags)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt(crc)
+                .putInt((int) compressedSize)
+                .putInt((int) size)
+                .putShort((short) name.length)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) offset)
+                .put(name);
+        centralDirectory.write(central.array());
+        count++;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static int dosTime(LocalDateTime time) {
+        if (time.getYear() < 1980) return (1 << 21) | (1 << 16);
+
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long offset = channel.position();
+            if (offset > 0xFFFFFFFFL) throw new ZipException("Jar is too large to be written without Zip64");
+
+            writeFully(ByteBuffer.wrap(centralDirectory.toByteArray()));
+
+            ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(RawZipFile.END_OF_CENTRAL_DIRECTORY)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) count)
+                    .putShort((short) count)
+                    .putInt(centralDirectory.size())
+                    .putInt((int) offset)
+                    .putShort((short) 0);
+            writeFully(end.flip());
+        } finally {
+            channel.close();
+            if (ownedExecutor != null) ownedExecutor.shutdownNow();
+        }
+    }
+
+    record Compressed(byte[] data, int method, int crc, long size) {
+    }
+}
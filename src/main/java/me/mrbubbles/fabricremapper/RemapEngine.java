@@ -0,0 +1,460 @@
+package me.mrbubbles.fabricremapper;
+
+import net.fabricmc.tinyremapper.InputTag;
+import net.fabricmc.tinyremapper.OutputConsumerPath;
+import net.fabricmc.tinyremapper.TinyRemapper;
+import org.gradle.api.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Remaps jars with a fixed logger and {@link RemapOptions}.
+ * <p>
+ * An engine keeps no state between remaps, so any number of remaps can run on one engine, or on several engines, at
+ * the same time, for example from parallel Gradle builds in one daemon. Every remap writes its intermediate files to
+ * its own temporary directory next to the output, and only the finished jar is moved into place. The options must
+ * not be changed while remaps are running.
+ * <p>
+ * The asynchronous variants run each remap on its own virtual thread when the runtime has them, as a remap mostly
+ * waits on downloads and jar I/O, and report progress after every entry written. Cancelling their future stops the
+ * remap at the next entry or phase and deletes its temporary files, leaving any existing output untouched.
+ */
+public class RemapEngine {
+
+    private static final ExecutorService ASYNC_EXECUTOR = createAsyncExecutor();
+
+    private final Logger logger;
+    private final RemapOptions options;
+
+    public RemapEngine(Logger logger, RemapOptions options) {
+        this.logger = logger;
+        this.options = options;
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    public RemapOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Remaps a jar with the mappings of a version, which are downloaded if they are not cached. A version that cannot
+     * be loaded fails the result.
+     *
+     * @throws IllegalArgumentException if the mappings version is not one like {@code 1.20.1+build.10}
+     */
+    public RemapResult remap(Path input, Path output, String mappingsVersion) {
+        return remap(input, output, mappingsVersion, new RemapMonitor());
+    }
+
+    public CompletableFuture<RemapResult> remapAsync(Path input, Path output, String mappingsVersion, RemapProgressListener listener) {
+        checkMappingsVersion(mappingsVersion);
+        return runAsync(monitor -> remap(input, output, mappingsVersion, monitor), listener);
+    }
+
+    private RemapResult remap(Path input, Path output, String mappingsVersion, RemapMonitor monitor) {
+        checkMappingsVersion(mappingsVersion);
+
+        RemapMetrics metrics = new RemapMetrics();
+        if (!checkPaths(input, output)) return report(RemapResult.failure(metrics));
+
+        LoadedMappings mappings;
+        try {
+            mappings = loadMappings(mappingsVersion, metrics);
+        } catch (IOException e) {
+            logger.error("Error during remapping: " + e.getMessage());
+            return report(RemapResult.failure(metrics));
+        }
+
+        monitor.checkCancelled();
+        return remap(input, output, mappings, metrics, monitor);
+    }
+
+    public RemapResult remap(Path input, Path output, LoadedMappings mappings) {
+        return remap(input, output, mappings, new RemapMetrics(), new RemapMonitor());
+    }
+
+    private RemapResult remap(Path input, Path output, LoadedMappings mappings, RemapMetrics metrics, RemapMonitor monitor) {
+        if (!checkPaths(input, output)) return report(RemapResult.failure(metrics));
+
+        Path jarOutput = toJarPath(output);
+        RenameStats stats = new RenameStats(options.isVerbose(), options.getRenameReport() != null);
+
+        try {
+            Path workDir = createWorkDir(jarOutput);
+
+            try {
+                metrics.addInput(input);
+
+                if (Files.exists(jarOutput) && Files.isSameFile(input, jarOutput)) {
+                    Path target = workDir.resolve("remapped.jar");
+                    remapJars(List.of(input), List.of(input), List.of(target), mappings, stats, metrics, monitor, workDir);
+                    FileUtil.moveAtomically(target, jarOutput);
+                } else if (options.isIncremental()) {
+                    String fingerprint = mappings.getFingerprint() + "/" + options.isSinglePass() + "/" + options.getCompressionLevel()
+                            + "/" + options.isParallelCompression() + "/" + options.isReproducible() + "/" + libraries();
+                    IncrementalRemap.remap(input, jarOutput, fingerprint, mappings.getLookup(), options, (jar, classPath, target) -> {
+                        Path remapped = workDir.resolve("remapped.jar");
+                        remapJars(List.of(jar), List.of(classPath), List.of(remapped), mappings, stats, metrics, monitor, workDir);
+                        FileUtil.moveAtomically(remapped, target);
+                    });
+                } else {
+                    Path target = workDir.resolve("remapped.jar");
+                    remapJars(List.of(input), List.of(input), List.of(target), mappings, stats, metrics, monitor, workDir);
+                    FileUtil.moveAtomically(target, jarOutput);
+                }
+            } finally {
+                FileUtil.deleteRecursively(workDir);
+            }
+
+            metrics.addOutput(jarOutput);
+        } catch (IOException e) {
+            logger.error("Error during remapping: " + e.getMessage());
+            return report(new RemapResult(false, List.of(), metrics, stats));
+        }
+
+        logger.info("Finished remapping '" + input.toFile().getName() + "'!");
+        return report(new RemapResult(true, List.of(jarOutput), metrics, stats));
+    }
+
+    /**
+     * Remaps every jar of {@code inputs} into {@code outputDir}, keeping their file names. A directory input stands
+     * for all jars directly inside it.
+     * <p>
+     * The mappings are loaded once and all jars go through a single TinyRemapper, so they share one class path view
+     * and references between the jars resolve, and its worker threads process the classes of all jars together. For
+     * the same reason no two jars may contain the same class, or have the same file name, and such batches fail before
+     * anything is remapped. Jars that share classes, like ones that shade the same library, have to be remapped one by
+     * one.
+     *
+     * @throws IllegalArgumentException if the mappings version is not one like {@code 1.20.1+build.10}
+     */
+    public RemapResult remapAll(List<Path> inputs, Path outputDir, String mappingsVersion) {
+        return remapAll(inputs, outputDir, mappingsVersion, new RemapMonitor());
+    }
+
+    public CompletableFuture<RemapResult> remapAllAsync(List<Path> inputs, Path outputDir, String mappingsVersion, RemapProgressListener listener) {
+        checkMappingsVersion(mappingsVersion);
+        return runAsync(monitor -> remapAll(inputs, outputDir, mappingsVersion, monitor), listener);
+    }
+
+    private RemapResult remapAll(List<Path> inputs, Path outputDir, String mappingsVersion, RemapMonitor monitor) {
+        checkMappingsVersion(mappingsVersion);
+
+        RemapMetrics metrics = new RemapMetrics();
+        RenameStats stats = new RenameStats(options.isVerbose(), options.getRenameReport() != null);
+        List<Path> jars = new ArrayList<>();
+        List<Path> outputs;
+
+        try {
+            for (Path input : inputs) {
+                if (Files.isDirectory(input)) {
+                    try (Stream<Path> stream = Files.list(input)) {
+                        stream.filter(Main::isJar).sorted().forEach(jars::add);
+                    }
+                } else if (Main.isJar(input)) {
+                    jars.add(input);
+                } else {
+                    logger.error("Input '" + input + "' is invalid! Please give a valid input.");
+                    return report(RemapResult.failure(metrics));
+                }
+            }
+
+            if (jars.isEmpty()) {
+                logger.error("No jars to remap were found.");
+                return report(RemapResult.failure(metrics));
+            }
+
+            if (!checkBatch(jars)) return report(RemapResult.failure(metrics));
+
+            LoadedMappings mappings = loadMappings(mappingsVersion, metrics);
+
+            monitor.checkCancelled();
+            Files.createDirectories(outputDir);
+            outputs = jars.stream().map(jar -> outputDir.resolve(jar.getFileName().toString())).toList();
+
+            Path workDir = createWorkDir(outputDir.resolve("batch"));
+            try {
+                List<Path> targets = new ArrayList<>();
+                for (int i = 0; i < jars.size(); i++) {
+                    metrics.addInput(jars.get(i));
+                    targets.add(workDir.resolve(i + ".jar"));
+                }
+
+                remapJars(jars, List.of(), targets, mappings, stats, metrics, monitor, workDir);
+
+                for (int i = 0; i < outputs.size(); i++) {
+                    FileUtil.moveAtomically(targets.get(i), outputs.get(i));
+                    metrics.addOutput(outputs.get(i));
+                }
+            } finally {
+                FileUtil.deleteRecursively(workDir);
+            }
+        } catch (IOException e) {
+            logger.error("Error during remapping: " + e.getMessage());
+            return report(new RemapResult(false, List.of(), metrics, stats));
+        }
+
+        logger.info("Finished remapping " + jars.size() + " jars!");
+        return report(new RemapResult(true, outputs, metrics, stats));
+    }
+
+    static void checkMappingsVersion(String mappingsVersion) {
+        if (!Main.isValidMappingsVersion(mappingsVersion)) {
+            throw new IllegalArgumentException("Mappings version '" + mappingsVersion + "' is invalid, expected one like '1.20.1+build.10'");
+        }
+    }
+
+    private LoadedMappings loadMappings(String mappingsVersion, RemapMetrics metrics) throws IOException {
+        LoadedMappings mappings = LoadedMappings.load(mappingsVersion, options.getYarnDownloading(), options.getCache(), metrics);
+        if (mappings == null) throw new IOException("Mappings '" + mappingsVersion + "' could not be loaded");
+
+        return mappings;
+    }
+
+    /**
+     * Starts a remap on the async executor. The future completes with the result of the remap, even a failed one, and
+     * is only completed exceptionally by unexpected errors.
+     */
+    private CompletableFuture<RemapResult> runAsync(Function<RemapMonitor, RemapResult> remap, RemapProgressListener listener) {
+        CompletableFuture<RemapResult> future = new CompletableFuture<>();
+        RemapMonitor monitor = new RemapMonitor(listener, future::isCancelled);
+
+        ASYNC_EXECUTOR.execute(() -> {
+            try {
+                monitor.checkCancelled();
+                future.complete(remap.apply(monitor));
+            } catch (CancellationException e) {
+                logger.info("Remapping was cancelled");
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Uses a virtual thread per remap when the runtime has them, and otherwise a pool of daemon threads. Looked up
+     * reflectively as the plugin still targets Java 17.
+     */
+    private static ExecutorService createAsyncExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "fabric-remapper-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Finishes the metrics of a run, logs its summaries, records it for Java Flight Recorder and writes the reports
+     * requested by the options.
+     */
+    private RemapResult report(RemapResult result) {
+        result.getMetrics().finish();
+        commitEvent(result);
+
+        if (result.getRenames() != null) logger.info(result.getRenames().summary());
+        logger.info(result.getMetrics().summary());
+
+        try {
+            if (options.getRenameReport() != null && result.getRenames() != null) result.getRenames().writeReport(options.getRenameReport());
+            if (options.getMetricsReport() != null) result.writeReport(options.getMetricsReport());
+        } catch (IOException e) {
+            logger.error("Error during writing the remap reports: " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    private static void commitEvent(RemapResult result) {
+        RemapEvent event = new RemapEvent();
+        if (!event.shouldCommit()) return;
+
+        RemapMetrics metrics = result.getMetrics();
+        event.output = result.getOutputs().isEmpty() ? null : result.getOutputs().get(0).getFileName().toString();
+        event.success = result.isSuccess();
+        event.bytesRead = metrics.getBytesRead();
+        event.bytesWritten = metrics.getBytesWritten();
+        event.entries = metrics.getEntries();
+        event.classes = metrics.getClasses();
+        event.renames = result.getRenames() != null ? result.getRenames().getTotal() : 0;
+        event.peakHeap = metrics.getPeakHeap();
+        event.commit();
+    }
+
+    private boolean checkPaths(Path input, Path output) {
+        if (!Main.isJar(input)) {
+            logger.error("Input is invalid! Please give a valid input.");
+            return false;
+        } else if (!Main.isPathUsable(output)) {
+            logger.error("Output is invalid! Please give a valid output.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that the jars of a batch write to distinct outputs and do not share any class, which TinyRemapper would
+     * treat as one input class and write to both outputs.
+     */
+    private boolean checkBatch(List<Path> jars) throws IOException {
+        Map<String, Path> names = new HashMap<>();
+        Map<String, Path> classes = new HashMap<>();
+
+        for (Path jar : jars) {
+            Path previous = names.putIfAbsent(jar.getFileName().toString(), jar);
+            if (previous != null) {
+                logger.error("Jars '" + previous + "' and '" + jar + "' would both be written to '" + jar.getFileName() + "'.");
+                return false;
+            }
+
+            try (RawZipFile zip = RawZipFile.open(jar)) {
+                for (RawZipFile.Entry entry : zip.entries()) {
+                    if (!entry.name().endsWith(".class")) continue;
+
+                    previous = classes.putIfAbsent(entry.name(), jar);
+                    if (previous != null && !previous.equals(jar)) {
+                        logger.error("Class '" + entry.name() + "' is in both '" + previous + "' and '" + jar + "'. Jars that share classes have to be remapped separately.");
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static Path toJarPath(Path output) {
+        String outputName = output.getFileName().toString();
+        int lastIndex = outputName.lastIndexOf('.');
+
+        return output.resolveSibling(lastIndex == -1 ? outputName + ".jar" : outputName.substring(0, lastIndex) + ".jar");
+    }
+
+    /**
+     * Creates the temporary directory of one remap next to its output, so the finished jar can be moved into place
+     * atomically.
+     */
+    private static Path createWorkDir(Path output) throws IOException {
+        Path parent = output.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        return Files.createTempDirectory(parent, "." + output.getFileName() + ".remap");
+    }
+
+    /**
+     * The indexed stubs of the configured libraries.
+     */
+    private List<Path> libraries() throws IOException {
+        MappingsCache cache = options.getCache();
+        return new LibraryIndex(cache.getLibrariesDir(), cache.getMaxSize()).resolve(options.getClassPath());
+    }
+
+    private static long countEntries(Path jar) throws IOException {
+        try (RawZipFile zip = RawZipFile.open(jar)) {
+            return zip.entries().size();
+        }
+    }
+
+    @SuppressWarnings("try") // The timers are only closed, never used inside their blocks
+    private void remapJars(List<Path> inputs, List<Path> classPath, List<Path> outputs, LoadedMappings mappings, RenameStats stats,
+                           RemapMetrics metrics, RemapMonitor monitor, Path workDir) throws IOException {
+        MappingLookup mapping = mappings.getLookup();
+
+        for (Path output : outputs) {
+            Files.deleteIfExists(output);
+        }
+
+        // Every entry is written once by the copy, and once more by the fixups unless they run during the apply
+        for (Path input : inputs) {
+            monitor.addTotalEntries(countEntries(input) * (options.isSinglePass() ? 1 : 2));
+        }
+
+        TinyRemapper.Builder builder = TinyRemapper.newRemapper()
+                .withMappings(mappings.getProvider())
+                .renameInvalidLocals(true)
+                .rebuildSourceFilenames(true)
+                .ignoreConflicts(true)
+                .keepInputData(true)
+                .skipLocalVariableMapping(true)
+                .ignoreFieldDesc(true)
+                .threads(options.getThreads());
+
+        if (options.isSinglePass()) builder.extraPostApplyVisitor(RemapUtil.postApplyVisitor(mapping, stats));
+
+        TinyRemapper remapper = builder.build();
+
+        try {
+            List<Path> libraries;
+            try (RemapMetrics.Timer timer = metrics.time(RemapMetrics.Phase.INDEX_LIBRARIES, null)) {
+                libraries = libraries();
+            }
+
+            monitor.checkCancelled();
+
+            List<InputTag> tags = new ArrayList<>();
+            try (RemapMetrics.Timer timer = metrics.time(RemapMetrics.Phase.READ, inputs.size() == 1 ? inputs.get(0) : null)) {
+                for (Path input : inputs) {
+                    InputTag tag = remapper.createInputTag();
+                    remapper.readInputs(tag, input);
+                    tags.add(tag);
+                }
+
+                remapper.readClassPath(Stream.concat(classPath.stream(), libraries.stream()).toArray(Path[]::new));
+            }
+
+            for (int i = 0; i < inputs.size(); i++) {
+                // TinyRemapper only writes the classes, the other entries are then copied without recompressing them
+                Path classes = Files.createTempFile(workDir, "classes", ".jar");
+                Files.delete(classes);
+
+                try {
+                    monitor.checkCancelled();
+
+                    try (RemapMetrics.Timer timer = metrics.time(RemapMetrics.Phase.APPLY, inputs.get(i));
+                         OutputConsumerPath outputConsumer = new OutputConsumerPath(classes)) {
+                        remapper.apply(outputConsumer, tags.get(i));
+                    }
+
+                    try (RemapMetrics.Timer timer = metrics.time(RemapMetrics.Phase.COPY_RESOURCES, inputs.get(i))) {
+                        RemapUtil.addNonClassEntries(classes, inputs.get(i), outputs.get(i), options.isSinglePass() ? remapper.getRemapper() : null, mapping, options, monitor);
+                    }
+                } finally {
+                    Files.deleteIfExists(classes);
+                }
+            }
+        } finally {
+            remapper.finish();
+        }
+
+        if (!options.isSinglePass()) {
+            for (Path output : outputs) {
+                try (RemapMetrics.Timer timer = metrics.time(RemapMetrics.Phase.FIXUPS, output)) {
+                    RemapUtil.remapJar(output, remapper, mapping, options, stats, monitor);
+                }
+            }
+        }
+    }
+}
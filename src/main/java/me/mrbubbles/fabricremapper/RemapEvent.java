@@ -0,0 +1,37 @@
+package me.mrbubbles.fabricremapper;
+
+import jdk.jfr.*;
+
+@Name("me.mrbubbles.fabricremapper.Remap")
+@Label("Remap")
+@Category("Fabric Remapper")
+@Description("A whole remap run, with its sizes and counts")
+class RemapEvent extends Event {
+
+    @Label("Output")
+    String output;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Entries")
+    long entries;
+
+    @Label("Classes")
+    long classes;
+
+    @Label("Renames")
+    long renames;
+
+    @Label("Peak Heap")
+    @DataAmount
+    long peakHeap;
+}
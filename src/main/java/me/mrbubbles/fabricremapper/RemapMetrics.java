@@ -0,0 +1,181 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and sizes of one remap run. Every timed phase is also recorded as a {@link RemapPhaseEvent} when Java
+ * Flight Recorder is running, so slow remaps can be diagnosed in production builds.
+ * <p>
+ * The peak heap is the highest heap usage sampled while the run was going, every few milliseconds and at the end of
+ * every phase. It is the usage of the whole JVM, so runs overlapping in the same JVM include each other's allocations,
+ * but sampling never disturbs them.
+ */
+public class RemapMetrics {
+
+    public enum Phase {
+        DOWNLOAD_MAPPINGS("download mappings"),
+        PARSE_MAPPINGS("parse mappings"),
+        INDEX_LIBRARIES("index libraries"),
+        READ("read"),
+        APPLY("apply"),
+        COPY_RESOURCES("copy resources"),
+        FIXUPS("fixups");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final long SAMPLE_MILLIS = 20;
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final ScheduledExecutorService SAMPLER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fabric-remapper-heap-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long start = System.nanoTime();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong classes = new AtomicLong();
+    private final AtomicLong peakHeap = new AtomicLong();
+    private final ScheduledFuture<?> sampling;
+    private volatile long totalNanos = -1;
+
+    public RemapMetrics() {
+        sampleHeap();
+
+        // The sampler only holds on to metrics that are still in use, in case one is never finished
+        WeakReference<RemapMetrics> reference = new WeakReference<>(this);
+        sampling = SAMPLER.scheduleAtFixedRate(() -> {
+            RemapMetrics metrics = reference.get();
+            if (metrics == null) throw new CancellationException();
+
+            metrics.sampleHeap();
+        }, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void sampleHeap() {
+        peakHeap.accumulateAndGet(MEMORY.getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    /**
+     * Starts timing a phase. Time spent in the same phase several times, e.g. once per jar, adds up.
+     */
+    public Timer time(Phase phase, Path jar) {
+        return new Timer(phase, jar);
+    }
+
+    public void addInput(Path jar) throws IOException {
+        bytesRead.addAndGet(Files.size(jar));
+    }
+
+    /**
+     * Counts the size and the entries of an output jar, from its central directory.
+     */
+    public void addOutput(Path jar) throws IOException {
+        bytesWritten.addAndGet(Files.size(jar));
+
+        try (RawZipFile zipFile = RawZipFile.open(jar)) {
+            for (RawZipFile.Entry entry : zipFile.entries()) {
+                entries.incrementAndGet();
+                if (entry.name().endsWith(".class")) classes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stops the clock of the whole run and the heap sampling.
+     */
+    public void finish() {
+        if (totalNanos != -1) return;
+
+        sampling.cancel(false);
+        sampleHeap();
+        totalNanos = System.nanoTime() - start;
+    }
+
+    public Duration getDuration(Phase phase) {
+        return Duration.ofNanos(phaseNanos.get(phase.ordinal()));
+    }
+
+    public Duration getTotalDuration() {
+        return Duration.ofNanos(totalNanos != -1 ? totalNanos : System.nanoTime() - start);
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getEntries() {
+        return entries.get();
+    }
+
+    public long getClasses() {
+        return classes.get();
+    }
+
+    public long getPeakHeap() {
+        return peakHeap.get();
+    }
+
+    public String summary() {
+        StringJoiner joiner = new StringJoiner(", ", " (", ")");
+        for (Phase phase : Phase.values()) {
+            long millis = getDuration(phase).toMillis();
+            if (millis > 0) joiner.add(phase.getName() + ": " + millis + " ms");
+        }
+
+        return "Remapped " + getClasses() + " classes and " + (getEntries() - getClasses()) + " other entries in "
+                + getTotalDuration().toMillis() + " ms" + joiner + ", read " + getBytesRead() + " and wrote " + getBytesWritten()
+                + " bytes, peak heap " + getPeakHeap() / (1024 * 1024) + " MiB";
+    }
+
+    public final class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final RemapPhaseEvent event = new RemapPhaseEvent();
+        private final long startNanos;
+
+        private Timer(Phase phase, Path jar) {
+            this.phase = phase;
+
+            event.phase = phase.getName();
+            event.jar = jar != null ? jar.getFileName().toString() : null;
+            event.begin();
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - startNanos);
+            event.commit();
+            sampleHeap();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package me.mrbubbles.fabricremapper;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Progress and cancellation of one remap, used by the thread running it.
+ * <p>
+ * Cancellation is cooperative: it is checked between the phases of a remap and after every entry written, and
+ * surfaces as a {@link CancellationException}, so the temporary files of the remap are deleted on the way out like on
+ * any other failure.
+ */
+final class RemapMonitor {
+
+    private final RemapProgressListener listener;
+    private final BooleanSupplier cancelled;
+    private long entries;
+    private long totalEntries;
+    private long bytesWritten;
+
+    RemapMonitor() {
+        this(null, () -> false);
+    }
+
+    RemapMonitor(RemapProgressListener listener, BooleanSupplier cancelled) {
+        this.listener = listener;
+        this.cancelled = cancelled;
+    }
+
+    void addTotalEntries(long count) {
+        totalEntries += count;
+    }
+
+    /**
+     * Counts an entry written to an output jar, then stops the remap if it was cancelled.
+     */
+    void entryWritten(long bytes) {
+        entries++;
+        bytesWritten += bytes;
+
+        if (listener != null) listener.progress(entries, Math.max(entries, totalEntries), bytesWritten);
+        checkCancelled();
+    }
+
+    void checkCancelled() {
+        if (cancelled.getAsBoolean()) throw new CancellationException("Remap was cancelled");
+    }
+}
@@ -0,0 +1,176 @@
+package me.mrbubbles.fabricremapper;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Settings of a {@link RemapEngine} and of the remaps it runs.
+ */
+public class RemapOptions {
+    private MappingsCache cache = MappingsCache.defaultCache();
+    private YarnDownloading yarnDownloading = YarnDownloading.shared();
+    private boolean singlePass = true;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean incremental;
+    private boolean verbose;
+    private Path renameReport;
+    private Path metricsReport;
+    private Duration metadataTtl = YarnDownloading.DEFAULT_METADATA_TTL;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean parallelCompression;
+    private boolean reproducible;
+    private List<Path> classPath = List.of();
+
+    public void setCache(MappingsCache cache) {
+        this.cache = cache;
+    }
+
+    public MappingsCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Where missing mappings are downloaded from. Defaults to the shared instance, which uses the official Fabric
+     * servers.
+     */
+    public void setYarnDownloading(YarnDownloading yarnDownloading) {
+        this.yarnDownloading = yarnDownloading;
+    }
+
+    public YarnDownloading getYarnDownloading() {
+        return yarnDownloading;
+    }
+
+    /**
+     * When enabled, the Tiny v2 fixups run inside TinyRemapper's apply step. Otherwise the output jar is rewritten
+     * a second time by {@link RemapUtil#remapJar}.
+     */
+    public void singlePass(boolean singlePass) {
+        this.singlePass = singlePass;
+    }
+
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    /**
+     * Number of worker threads used by TinyRemapper and for rewriting classes.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * When enabled, only entries that changed since the last remap into the same output are remapped again.
+     *
+     * @see IncrementalRemap
+     */
+    public void incremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Logs every single rename. Otherwise only a summary per category is logged once the remap is done.
+     */
+    public void verbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    /**
+     * When set, a JSON report with the counts and the distinct renames per category is written to this path.
+     */
+    public void setRenameReport(Path renameReport) {
+        this.renameReport = renameReport;
+    }
+
+    public Path getRenameReport() {
+        return renameReport;
+    }
+
+    /**
+     * When set, a JSON report with the phase timings, sizes and counts of the run is written to this path.
+     *
+     * @see RemapResult#writeReport
+     */
+    public void setMetricsReport(Path metricsReport) {
+        this.metricsReport = metricsReport;
+    }
+
+    public Path getMetricsReport() {
+        return metricsReport;
+    }
+
+    /**
+     * How long the cached yarn builds listing of a Minecraft version is used before it is revalidated.
+     */
+    public void setMetadataTtl(Duration metadataTtl) {
+        this.metadataTtl = metadataTtl;
+    }
+
+    public Duration getMetadataTtl() {
+        return metadataTtl;
+    }
+
+    /**
+     * Deflate level of the entries written to the output jar, from 1 to 9, 0 to store them uncompressed, or -1 for
+     * the default level.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Deflates large entries in blocks on several threads.
+     */
+    public void parallelCompression(boolean parallelCompression) {
+        this.parallelCompression = parallelCompression;
+    }
+
+    public boolean isParallelCompression() {
+        return parallelCompression;
+    }
+
+    /**
+     * Gives every entry of the output jar a fixed timestamp, so remapping the same input always produces the same
+     * bytes.
+     */
+    public void reproducible(boolean reproducible) {
+        this.reproducible = reproducible;
+    }
+
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    /**
+     * Library jars or directories, like the Minecraft jar and the mod's dependencies, that the remapped jar is
+     * compiled against. Classes are only read from them to resolve inherited members.
+     *
+     * @see LibraryIndex
+     */
+    public void setClassPath(List<Path> classPath) {
+        this.classPath = List.copyOf(classPath);
+    }
+
+    public List<Path> getClassPath() {
+        return classPath;
+    }
+}
@@ -0,0 +1,20 @@
+package me.mrbubbles.fabricremapper;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("me.mrbubbles.fabricremapper.RemapPhase")
+@Label("Remap Phase")
+@Category("Fabric Remapper")
+@Description("One phase of remapping a jar")
+class RemapPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Jar")
+    String jar;
+}
@@ -0,0 +1,13 @@
+package me.mrbubbles.fabricremapper;
+
+/**
+ * Receives the progress of an asynchronous remap, after every entry written to an output jar.
+ * <p>
+ * The total counts every entry of the input jars once for each pass that writes it, so it is known before the first
+ * entry is written. Calls come from the thread running the remap, one at a time, and should return quickly.
+ */
+@FunctionalInterface
+public interface RemapProgressListener {
+
+    void progress(long entries, long totalEntries, long bytesWritten);
+}
@@ -0,0 +1,87 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Outcome of a remap run: whether it succeeded, the jars it wrote, and its {@link RemapMetrics} and
+ * {@link RenameStats}. The rename stats are {@code null} when the run failed before remapping anything.
+ */
+public class RemapResult {
+
+    private final boolean success;
+    private final List<Path> outputs;
+    private final RemapMetrics metrics;
+    private final RenameStats renames;
+
+    public RemapResult(boolean success, List<Path> outputs, RemapMetrics metrics, RenameStats renames) {
+        this.success = success;
+        this.outputs = List.copyOf(outputs);
+        this.metrics = metrics;
+        this.renames = renames;
+    }
+
+    public static RemapResult failure(RemapMetrics metrics) {
+        return new RemapResult(false, List.of(), metrics, null);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public List<Path> getOutputs() {
+        return outputs;
+    }
+
+    public RemapMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RenameStats getRenames() {
+        return renames;
+    }
+
+    /**
+     * Writes the metrics of the run as JSON, with durations in milliseconds and sizes in bytes.
+     */
+    public void writeReport(Path path) throws IOException {
+        if (path.toAbsolutePath().getParent() != null) Files.createDirectories(path.toAbsolutePath().getParent());
+
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"success\": " + success + ",\n  \"outputs\": [");
+
+            String separator = "";
+            for (Path output : outputs) {
+                writer.write(separator + RenameStats.quote(output.toString()));
+                separator = ", ";
+            }
+
+            writer.write("],\n  \"totalMillis\": " + metrics.getTotalDuration().toMillis() + ",\n  \"phaseMillis\": {");
+
+            separator = "\n";
+            for (RemapMetrics.Phase phase : RemapMetrics.Phase.values()) {
+                writer.write(separator + "    " + RenameStats.quote(phase.getName()) + ": " + metrics.getDuration(phase).toMillis());
+                separator = ",\n";
+            }
+
+            writer.write("\n  },\n  \"bytesRead\": " + metrics.getBytesRead()
+                    + ",\n  \"bytesWritten\": " + metrics.getBytesWritten()
+                    + ",\n  \"entries\": " + metrics.getEntries()
+                    + ",\n  \"classes\": " + metrics.getClasses()
+                    + ",\n  \"peakHeap\": " + metrics.getPeakHeap()
+                    + ",\n  \"renames\": {");
+
+            separator = "\n";
+            for (RenameStats.Category category : RenameStats.Category.values()) {
+                writer.write(separator + "    " + RenameStats.quote(category.getName()) + ": " + (renames != null ? renames.getCount(category) : 0));
+                separator = ",\n";
+            }
+
+            writer.write("\n  }\n}\n");
+        }
+    }
+}
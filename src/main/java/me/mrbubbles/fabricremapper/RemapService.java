@@ -0,0 +1,157 @@
+package me.mrbubbles.fabricremapper;
+
+import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
+import org.gradle.api.logging.Logger;
+
+import java.lang.ref.SoftReference;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived remapper that keeps loaded mappings in memory between remaps, so repeated remaps in the same JVM skip
+ * resolving and parsing the mappings. Every remap still gets its own TinyRemapper.
+ * <p>
+ * Memory is bounded in three ways: at most {@code maxMappings} mappings sets are kept, least recently used first out,
+ * a set that has not been used for {@code idleTimeout} is dropped, and all of them are only softly referenced, so the
+ * garbage collector can reclaim them before running out of heap.
+ */
+public class RemapService implements AutoCloseable {
+
+    private static final Logger LOGGER = RemapperPlugin.getLogger();
+
+    public static final int DEFAULT_MAX_MAPPINGS = 2;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private static RemapService shared;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService sweeper;
+    private ScheduledFuture<?> sweep;
+    private int maxMappings;
+    private Duration idleTimeout;
+    private boolean closed;
+
+    public RemapService(int maxMappings, Duration idleTimeout) {
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fabric-remapper-service-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        configure(maxMappings, idleTimeout);
+    }
+
+    /**
+     * Returns the service shared by everything in this JVM, for example all builds run by one Gradle daemon, applying
+     * the given limits to it.
+     */
+    public static synchronized RemapService shared(int maxMappings, Duration idleTimeout) {
+        if (shared == null || shared.isClosed()) {
+            shared = new RemapService(maxMappings, idleTimeout);
+        } else {
+            shared.configure(maxMappings, idleTimeout);
+        }
+
+        return shared;
+    }
+
+    public synchronized void configure(int maxMappings, Duration idleTimeout) {
+        this.maxMappings = Math.max(1, maxMappings);
+        this.idleTimeout = idleTimeout;
+
+        if (sweep != null) sweep.cancel(false);
+
+        long period = Math.max(1000, idleTimeout.toMillis() / 4);
+        sweep = sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+
+        evictOverflow();
+    }
+
+    public boolean remap(Path input, Path output, String mappingsVersion, RemapOptions options) {
+        return remap(new RemapEngine(LOGGER, options), input, output, mappingsVersion).isSuccess();
+    }
+
+    /**
+     * Remaps a jar on the given engine, with the mappings held by this service.
+     */
+    public RemapResult remap(RemapEngine engine, Path input, Path output, String mappingsVersion) {
+        RemapEngine.checkMappingsVersion(mappingsVersion);
+
+        LoadedMappings mappings = getMappings(mappingsVersion, engine.getOptions().getYarnDownloading(), engine.getOptions().getCache());
+        if (mappings == null) {
+            engine.getLogger().error("Failed to load mappings '" + mappingsVersion + "'");
+
+            RemapMetrics metrics = new RemapMetrics();
+            metrics.finish();
+            return RemapResult.failure(metrics);
+        }
+
+        return engine.remap(input, output, mappings);
+    }
+
+    /**
+     * Returns the mappings of a version, loading them only if they are not held yet. Concurrent requests for the
+     * same mappings wait for one load instead of each loading them.
+     */
+    public LoadedMappings getMappings(String mappingsVersion, YarnDownloading yarnDownloading, MappingsCache cache) {
+        Entry entry;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Remap service is closed");
+
+            entry = entries.computeIfAbsent(cache.getRoot().toAbsolutePath() + "|" + mappingsVersion, key -> new Entry());
+            entry.lastUsed = System.currentTimeMillis();
+            evictOverflow();
+        }
+
+        synchronized (entry) {
+            LoadedMappings mappings = entry.mappings.get();
+            if (mappings != null) return mappings;
+
+            mappings = LoadedMappings.load(mappingsVersion, yarnDownloading, cache, null);
+            if (mappings != null) entry.mappings = new SoftReference<>(mappings);
+
+            return mappings;
+        }
+    }
+
+    private synchronized void evictOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (entries.size() > maxMappings && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+
+        entries.values().removeIf(entry -> entry.lastUsed + idleTimeout.toMillis() < now);
+
+        if (entries.size() < before) LOGGER.info("Released " + (before - entries.size()) + " idle mappings");
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        entries.clear();
+        sweeper.shutdownNow();
+    }
+
+    private static final class Entry {
+        private volatile long lastUsed;
+        private SoftReference<LoadedMappings> mappings = new SoftReference<>(null);
+    }
+}
@@ -1,209 +1,173 @@
 package me.mrbubbles.fabricremapper;
 
-import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
-import net.fabricmc.accesswidener.AccessWidenerReader;
-import net.fabricmc.accesswidener.AccessWidenerRemapper;
-import net.fabricmc.accesswidener.AccessWidenerWriter;
 import net.fabricmc.tinyremapper.TinyRemapper;
-import org.gradle.api.logging.Logger;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.Handle;
 import org.objectweb.asm.commons.Remapper;
-import org.objectweb.asm.tree.*;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class RemapUtil {
 
-    private static final Logger LOGGER = RemapperPlugin.getLogger();
-
-    public static void remapJar(Path outputJar, TinyRemapper remapper, Map<String, String> mappings) throws IOException {
-        Path tempOutputJar = Paths.get(outputJar.toString() + "_temp");
-
-        try (ZipInputStream inputZip = new ZipInputStream(Files.newInputStream(outputJar));
-             ZipOutputStream tempOutputZip = new ZipOutputStream(Files.newOutputStream(tempOutputJar))) {
+    public static void remapJar(Path outputJar, TinyRemapper remapper, MappingLookup mappings) throws IOException {
+        remapJar(outputJar, remapper, mappings, new RemapOptions(), new RenameStats(false, false));
+    }
 
-            ZipEntry entry;
-            while ((entry = inputZip.getNextEntry()) != null) {
-                String entryName = entry.getName();
+    /**
+     * Rewrites the jar with the Tiny v2 fixups, remapping and compressing whole classes concurrently on a pool of
+     * worker threads. Entries are written back in their original order, and at most a few entries per worker are held
+     * in memory at once. Access wideners, class tweakers and mixin refmaps are remapped too when a remapper is given.
+     * All other entries are copied as they are compressed, without being inflated, and so are classes whose constant
+     * pool holds no mapped name.
+     */
+    public static void remapJar(Path outputJar, TinyRemapper remapper, MappingLookup mappings, RemapOptions options, RenameStats stats) throws IOException {
+        remapJar(outputJar, remapper, mappings, options, stats, new RemapMonitor());
+    }
 
-                if (!entryName.endsWith(".class")) {
-                    tempOutputZip.putNextEntry(new ZipEntry(entryName));
-                    byte[] buffer = readStream(inputZip);
-                    if (entryName.endsWith(".accesswidener")) {
-                        buffer = remapAccessWidener(buffer, remapper.getRemapper(), mappings);
+    static void remapJar(Path outputJar, TinyRemapper remapper, MappingLookup mappings, RemapOptions options, RenameStats stats, RemapMonitor monitor) throws IOException {
+        Path tempOutputJar = Files.createTempFile(outputJar.toAbsolutePath().getParent(), outputJar.getFileName().toString(), ".tmp");
+        int threads = options.getThreads();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        Deque<PendingEntry> pending = new ArrayDeque<>();
+        int maxPending = Math.max(1, threads) * 4;
+        ResourceRemapper resources = remapper != null ? new ResourceRemapper(remapper.getRemapper(), mappings) : null;
+
+        try (RawZipFile inputZip = RawZipFile.open(outputJar);
+             RawZipWriter tempOutputZip = new RawZipWriter(tempOutputJar, options, executor, monitor)) {
+
+            for (RawZipFile.Entry entry : inputZip.entries()) {
+                String entryName = entry.name();
+
+                Future<RawZipWriter.Compressed> result = null;
+                if (entryName.endsWith(".class")) {
+                    byte[] buffer = inputZip.read(entry);
+                    if (FixupClassVisitor.mightChange(buffer, mappings)) {
+                        result = executor.submit(() -> tempOutputZip.compress(remapClass(buffer, mappings, stats)));
                     }
-                    tempOutputZip.write(buffer);
-                    tempOutputZip.closeEntry();
-                    continue;
+                } else if (resources != null && ResourceRemapper.isRemappable(entryName)) {
+                    byte[] buffer = inputZip.read(entry);
+                    result = executor.submit(() -> tempOutputZip.compress(resources.remap(entryName, buffer)));
                 }
 
-                byte[] remappedBytes = remapClass(readStream(inputZip), mappings);
+                pending.add(new PendingEntry(entry, result));
+                if (pending.size() >= maxPending) writeEntry(inputZip, tempOutputZip, pending.poll());
+            }
 
-                tempOutputZip.putNextEntry(new ZipEntry(entryName));
-                tempOutputZip.write(remappedBytes);
-                tempOutputZip.closeEntry();
+            while (!pending.isEmpty()) {
+                writeEntry(inputZip, tempOutputZip, pending.poll());
             }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempOutputJar);
+            throw e;
+        } finally {
+            executor.shutdownNow();
         }
 
-        Files.move(tempOutputJar, outputJar, StandardCopyOption.REPLACE_EXISTING);
+        FileUtil.moveAtomically(tempOutputJar, outputJar);
     }
 
-    private static byte[] readStream(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[1024];
-
-        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
+    private static void writeEntry(RawZipFile inputZip, RawZipWriter outputZip, PendingEntry entry) throws IOException {
+        if (entry.result() == null) {
+            outputZip.copy(inputZip, entry.entry());
+            return;
         }
 
-        buffer.flush();
-        return buffer.toByteArray();
-    }
-
-    private static byte[] remapAccessWidener(byte[] accessWidenerBytes, Remapper remapper, Map<String, String> mappings) {
-        AccessWidenerWriter writer = new AccessWidenerWriter();
-        AccessWidenerRemapper remappingDecorator = new AccessWidenerRemapper(writer, remapper, "intermediary", "named");
-        AccessWidenerReader accessWidenerReader = new AccessWidenerReader(remappingDecorator);
-        accessWidenerReader.read(accessWidenerBytes, "intermediary");
-
-        byte[] newAccessWidenerBytes = writer.write();
-        String accessWidener = new String(newAccessWidenerBytes, StandardCharsets.UTF_8);
-        String[] lines = accessWidener.split("\n");
-        StringBuilder result = new StringBuilder();
-
-        result.append(lines[0].replace('\t', ' ')).append("\n\n");
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i];
-            String[] parts = line.split("\t");
-            for (String part : parts) {
-                if (mappings.containsKey(part)) {
-                    line = line.replace(part, mappings.get(part));
-                }
-            }
-
-            result.append(line.replace('\t', ' ')).append("\n");
+        RawZipWriter.Compressed bytes;
+        try {
+            bytes = entry.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while remapping " + entry.entry().name());
+        } catch (ExecutionException e) {
+            throw new IOException("Error during remapping " + entry.entry().name(), e.getCause());
         }
 
-        return result.toString().getBytes(StandardCharsets.UTF_8);
+        outputZip.write(entry.entry().name(), bytes);
     }
 
-    private static byte[] remapClass(byte[] classBytes, Map<String, String> mappings) {
-        ClassReader classReader = new ClassReader(classBytes);
-        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-
-        ClassNode classNode = new ClassNode();
-        classReader.accept(classNode, 0);
-
-        if (mappings.containsKey(classNode.name)) {
-            LOGGER.info("Found nasty class. Renaming \"" + classNode.name + "\" to \"" + mappings.get(classNode.name) + "\"");
-            classNode.name = mappings.get(classNode.name);
-        }
+    /**
+     * An entry waiting to be written, or to be copied as is if it has no result.
+     */
+    private record PendingEntry(RawZipFile.Entry entry, Future<RawZipWriter.Compressed> result) {
+    }
 
-        classNode.fields.parallelStream().filter(fieldNode -> mappings.containsKey(fieldNode.name)).forEach(fieldNode -> {
-            LOGGER.info("Found nasty field. Renaming \"" + fieldNode.name + "\" to \"" + mappings.get(fieldNode.name) + "\"");
-            fieldNode.name = mappings.get(fieldNode.name);
-        });
-
-        classNode.methods.parallelStream().filter(methodNode -> mappings.containsKey(methodNode.name)).forEach(methodNode -> {
-            LOGGER.info("Found nasty method. Renaming \"" + methodNode.name + "\" to \"" + mappings.get(methodNode.name) + "\"");
-            methodNode.name = mappings.get(methodNode.name);
-        });
-
-        for (MethodNode method : classNode.methods) {
-            InsnList list = method.instructions;
-            Arrays.stream(list.toArray()).parallel().forEach(currentInsn -> {
-                if (currentInsn instanceof MethodInsnNode methodInsnNode) {
-
-                    String ownerName = methodInsnNode.owner.substring(methodInsnNode.owner.lastIndexOf('/') + 1);
-                    if (mappings.containsKey(ownerName)) {
-                        String ownerDir = methodInsnNode.owner.substring(0, methodInsnNode.owner.lastIndexOf('/'));
-                        LOGGER.info("Found nasty class call. Renaming \"" + ownerName + "\" to \"" + mappings.get(ownerName) + "\"");
-                        methodInsnNode.owner = ownerDir + mappings.get(ownerName);
-                    }
+    /**
+     * Writes the remapped classes, sorted by name since TinyRemapper writes them in no particular order, followed by
+     * the non-class entries of the input jar in their original order. Those are copied as they are compressed, except
+     * for access wideners, class tweakers and mixin refmaps with names to remap, which are remapped when a remapper is
+     * given.
+     */
+    public static void addNonClassEntries(Path classesJar, Path inputJar, Path outputJar, Remapper remapper, MappingLookup mappings, RemapOptions options) throws IOException {
+        addNonClassEntries(classesJar, inputJar, outputJar, remapper, mappings, options, new RemapMonitor());
+    }
 
-                    if (mappings.containsKey(methodInsnNode.name)) {
-                        LOGGER.info("Found nasty method call. Renaming \"" + methodInsnNode.name + "\" to \"" + mappings.get(methodInsnNode.name) + "\"");
-                        methodInsnNode.name = mappings.get(methodInsnNode.name);
-                    }
-                } else if (currentInsn instanceof FieldInsnNode fieldInsnNode) {
+    static void addNonClassEntries(Path classesJar, Path inputJar, Path outputJar, Remapper remapper, MappingLookup mappings, RemapOptions options,
+                                   RemapMonitor monitor) throws IOException {
+        try (RawZipFile classesZip = RawZipFile.open(classesJar);
+             RawZipFile inputZip = RawZipFile.open(inputJar);
+             RawZipWriter outputZip = new RawZipWriter(outputJar, options, monitor)) {
 
-                    String ownerName = fieldInsnNode.owner.substring(fieldInsnNode.owner.lastIndexOf('/') + 1);
-                    if (mappings.containsKey(ownerName)) {
-                        String ownerDir = fieldInsnNode.owner.substring(0, fieldInsnNode.owner.lastIndexOf('/'));
-                        LOGGER.info("Found nasty class call. Renaming \"" + ownerName + "\" to \"" + mappings.get(ownerName) + "\"");
-                        fieldInsnNode.owner = ownerDir + mappings.get(ownerName);
-                    }
+            ResourceRemapper resources = remapper != null ? new ResourceRemapper(remapper, mappings) : null;
+            List<RawZipFile.Entry> classes = new ArrayList<>(classesZip.entries());
+            classes.sort(Comparator.comparing(RawZipFile.Entry::name));
 
-                    if (mappings.containsKey(fieldInsnNode.name)) {
-                        LOGGER.info("Found nasty field call. Renaming \"" + fieldInsnNode.name + "\" to \"" + mappings.get(fieldInsnNode.name) + "\"");
-                        fieldInsnNode.name = mappings.get(fieldInsnNode.name);
-                    }
-                } else if (currentInsn instanceof InvokeDynamicInsnNode dynamicInsnNode) {
+            for (RawZipFile.Entry entry : classes) {
+                if (entry.name().endsWith(".class")) outputZip.copy(classesZip, entry);
+            }
 
-                    if (mappings.containsKey(dynamicInsnNode.name)) {
-                        LOGGER.info("Found nasty invoke dynamic. Renaming \"" + dynamicInsnNode.name + "\" to \"" + mappings.get(dynamicInsnNode.name) + "\"");
-                        dynamicInsnNode.name = mappings.get(dynamicInsnNode.name);
-                    }
+            for (RawZipFile.Entry entry : inputZip.entries()) {
+                if (entry.name().endsWith(".class")) continue;
 
-                    if (mappings.containsKey(dynamicInsnNode.bsm.getName())) {
-                        LOGGER.info("Found nasty bsm. Renaming \"" + dynamicInsnNode.bsm.getName() + "\" to \"" + mappings.get(dynamicInsnNode.bsm.getName()) + "\"");
-                        Handle handle = dynamicInsnNode.bsm;
-                        InvokeDynamicInsnNode newDynamicInsnNode = new InvokeDynamicInsnNode(dynamicInsnNode.name, dynamicInsnNode.desc,
-                                new Handle(handle.getTag(), handle.getOwner(), mappings.get(dynamicInsnNode.bsm.getName()), handle.getDesc()), dynamicInsnNode.bsmArgs);
-                        method.instructions.insertBefore(currentInsn, newDynamicInsnNode);
-                        method.instructions.remove(currentInsn);
-                    }
-                } else if (currentInsn instanceof LdcInsnNode ldcInsnNode && ((LdcInsnNode) currentInsn).cst instanceof String) {
-                    String cst = (String) ldcInsnNode.cst;
+                if (resources != null && ResourceRemapper.isRemappable(entry.name())) {
+                    byte[] bytes = inputZip.read(entry);
+                    byte[] remapped = resources.remap(entry.name(), bytes);
 
-                    if (mappings.containsKey(cst)) {
-                        LOGGER.info("Found nasty string constant. Renaming \"" + cst + "\" to \"" + mappings.get(cst) + "\"");
-                        ldcInsnNode.cst = mappings.get(cst);
+                    if (remapped != bytes) {
+                        outputZip.write(entry.name(), remapped);
+                        continue;
                     }
                 }
-            });
-        }
 
-        classNode.accept(classWriter);
-
-        return classWriter.toByteArray();
+                outputZip.copy(inputZip, entry);
+            }
+        }
     }
 
-    public static Map<String, String> getMappings(Path path) throws IOException {
-        Map<String, String> map = new HashMap<>();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            line = line.replaceAll("\\s+", " ");
-            if (line.startsWith(" ")) line = line.substring(1);
+    static byte[] remapAccessWidener(byte[] accessWidenerBytes, Remapper remapper, MappingLookup mappings) {
+        return new ResourceRemapper(remapper, mappings).remapAccessWidener(accessWidenerBytes);
+    }
 
-            String[] lines = line.split(" ");
+    /**
+     * Runs the Tiny v2 name fixups as an extra stage of TinyRemapper's apply step, so every class is read and
+     * written exactly once instead of being rewritten again by {@link #remapJar}.
+     */
+    public static TinyRemapper.ApplyVisitorProvider postApplyVisitor(MappingLookup mappings, RenameStats stats) {
+        return (cls, next) -> new FixupClassVisitor(next, mappings, stats, null);
+    }
 
+    /**
+     * Streams the class through the fixups. The writer shares the reader's constant pool, so methods whose code
+     * references nothing that gets renamed are copied as raw bytes, and max stack and locals stay valid as is because
+     * the fixups only ever rename.
+     */
+    static byte[] remapClass(byte[] classBytes, MappingLookup mappings, RenameStats stats) {
+        if (!FixupClassVisitor.mightChange(classBytes, mappings)) return classBytes;
 
-            if (lines.length < 4 || lines[0].startsWith("c") || lines[0].startsWith("p") || lines[3].startsWith("<") || lines[2].equals(lines[3]))
-                continue;
+        ClassReader classReader = new ClassReader(classBytes);
+        Set<String> changedMethods = FixupClassVisitor.changedMethods(classReader, mappings);
 
-            map.put(lines[2], lines[3]);
-        }
+        ClassWriter classWriter = new ClassWriter(classReader, 0);
+        classReader.accept(new FixupClassVisitor(classWriter, mappings, stats, changedMethods), 0);
 
-        reader.close();
+        return classWriter.toByteArray();
+    }
 
-        return map;
+    public static MappingSet getMappings(Path path) throws IOException {
+        return MappingSet.read(path, "intermediary", "named");
     }
 
 }
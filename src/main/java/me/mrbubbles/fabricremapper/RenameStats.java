@@ -0,0 +1,150 @@
+package me.mrbubbles.fabricremapper;
+
+import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
+import org.gradle.api.logging.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the renames done by the Tiny v2 fixups, per category. Classes are remapped on many threads at once, so the
+ * counters are {@link LongAdder}s and every rename costs one uncontended increment. The individual renames are only
+ * kept when a report is requested, and only logged when verbose logging is enabled.
+ */
+public class RenameStats {
+
+    private static final Logger LOGGER = RemapperPlugin.getLogger();
+
+    public enum Category {
+        CLASS("class"),
+        FIELD("field"),
+        METHOD("method"),
+        CLASS_REFERENCE("class reference"),
+        FIELD_REFERENCE("field reference"),
+        METHOD_REFERENCE("method reference"),
+        INVOKE_DYNAMIC("invoke dynamic"),
+        BOOTSTRAP_METHOD("bootstrap method"),
+        STRING_CONSTANT("string constant");
+
+        private final String name;
+
+        Category(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final LongAdder[] counts = new LongAdder[Category.values().length];
+    private final Map<Category, Map<String, String>> renames;
+    private final boolean verbose;
+
+    public RenameStats(boolean verbose, boolean keepRenames) {
+        this.verbose = verbose;
+        this.renames = keepRenames ? new EnumMap<>(Category.class) : null;
+
+        for (Category category : Category.values()) {
+            counts[category.ordinal()] = new LongAdder();
+            if (renames != null) renames.put(category, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void record(Category category, String from, String to) {
+        counts[category.ordinal()].increment();
+
+        if (renames != null) renames.get(category).putIfAbsent(from, to);
+        if (verbose) LOGGER.info("Renamed " + category.getName() + " \"" + from + "\" to \"" + to + "\"");
+    }
+
+    public long getCount(Category category) {
+        return counts[category.ordinal()].sum();
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public String summary() {
+        StringJoiner joiner = new StringJoiner(", ", " (", ")");
+        for (Category category : Category.values()) {
+            long count = getCount(category);
+            if (count > 0) joiner.add(category.getName() + ": " + count);
+        }
+
+        return "Renamed " + getTotal() + " names" + (getTotal() > 0 ? joiner.toString() : "");
+    }
+
+    /**
+     * Writes the counts and, if they were kept, the distinct renames of every category as JSON.
+     */
+    public void writeReport(Path path) throws IOException {
+        if (path.toAbsolutePath().getParent() != null) Files.createDirectories(path.toAbsolutePath().getParent());
+
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"total\": " + getTotal() + ",\n  \"counts\": {");
+
+            String separator = "\n";
+            for (Category category : Category.values()) {
+                writer.write(separator + "    " + quote(category.getName()) + ": " + getCount(category));
+                separator = ",\n";
+            }
+
+            writer.write("\n  }");
+
+            if (renames != null) {
+                writer.write(",\n  \"renames\": {");
+
+                separator = "\n";
+                for (Category category : Category.values()) {
+                    writer.write(separator + "    " + quote(category.getName()) + ": {");
+
+                    String entrySeparator = "\n";
+                    for (Map.Entry<String, String> rename : new TreeMap<>(renames.get(category)).entrySet()) {
+                        writer.write(entrySeparator + "      " + quote(rename.getKey()) + ": " + quote(rename.getValue()));
+                        entrySeparator = ",\n";
+                    }
+
+                    writer.write(entrySeparator.equals("\n") ? "}" : "\n    }");
+                    separator = ",\n";
+                }
+
+                writer.write("\n  }");
+            }
+
+            writer.write("\n}\n");
+        }
+    }
+
+    static String quote(String string) {
+        StringBuilder builder = new StringBuilder(string.length() + 2).append('"');
+
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+                    else builder.append(c);
+                }
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,255 @@
+package me.mrbubbles.fabricremapper;
+
+import org.objectweb.asm.commons.Remapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Remaps the names inside the resources of a jar that refer to classes and members: access wideners, class tweakers
+ * and mixin refmaps.
+ * <p>
+ * Resources are scanned once and only the tokens that hold names are replaced, each with direct lookups through
+ * TinyRemapper's remapper and the Tiny v2 fixups. Everything else, including comments and formatting, is copied as
+ * it is, so even large files remap in linear time and a name is never replaced inside another one.
+ */
+final class ResourceRemapper {
+
+    private static final String SOURCE_NAMESPACE = "intermediary";
+    private static final String TARGET_NAMESPACE = "named";
+
+    private final Remapper remapper;
+    private final MappingLookup mappings;
+
+    ResourceRemapper(Remapper remapper, MappingLookup mappings) {
+        this.remapper = remapper;
+        this.mappings = mappings;
+    }
+
+    static boolean isRemappable(String name) {
+        return name.endsWith(".accesswidener") || name.endsWith(".classtweaker") || name.endsWith("refmap.json");
+    }
+
+    /**
+     * Returns the remapped content of a resource, or the given bytes if it has nothing to remap.
+     */
+    byte[] remap(String name, byte[] bytes) {
+        return name.endsWith("refmap.json") ? remapRefmap(bytes) : remapAccessWidener(bytes);
+    }
+
+    /**
+     * Remaps an access widener or class tweaker of the source namespace. Files of any other namespace are returned as
+     * they are.
+     */
+    byte[] remapAccessWidener(byte[] bytes) {
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        StringBuilder result = new StringBuilder(text.length() + 64);
+        int[] starts = new int[8];
+        int[] ends = new int[8];
+        boolean header = true;
+        // The next comment sign, which is only searched for again once it falls behind, to keep the scan linear
+        int comment = text.indexOf('#');
+
+        for (int lineStart = 0; lineStart < text.length(); ) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd == -1) lineEnd = text.length();
+
+            if (comment != -1 && comment < lineStart) comment = text.indexOf('#', lineStart);
+            int contentEnd = comment != -1 && comment < lineEnd ? comment : lineEnd;
+
+            // Split the line into whitespace separated tokens, keeping only their positions
+            int count = 0;
+            for (int i = lineStart; i < contentEnd; ) {
+                while (i < contentEnd && Character.isWhitespace(text.charAt(i))) i++;
+                if (i == contentEnd) break;
+
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+
+                starts[count] = i;
+                while (i < contentEnd && !Character.isWhitespace(text.charAt(i))) i++;
+                ends[count++] = i;
+            }
+
+            String[] replacements = count > 0 ? new String[count] : null;
+
+            if (count > 0 && header) {
+                String format = text.substring(starts[0], ends[0]);
+                if (!format.equals("accessWidener") && !format.equals("classTweaker") || count < 3) return bytes;
+                if (!text.startsWith(SOURCE_NAMESPACE, starts[2]) || ends[2] - starts[2] != SOURCE_NAMESPACE.length()) return bytes;
+
+                replacements[2] = TARGET_NAMESPACE;
+                header = false;
+            } else if (count > 0) {
+                String access = text.substring(starts[0], ends[0]);
+                String kind = count > 1 ? text.substring(starts[1], ends[1]) : "";
+
+                if (access.endsWith("inject-interface") && count >= 3) {
+                    replacements[1] = mapClass(text.substring(starts[1], ends[1]));
+                    replacements[2] = mapClass(text.substring(starts[2], ends[2]));
+                } else if (kind.equals("class") && count >= 3) {
+                    replacements[2] = mapClass(text.substring(starts[2], ends[2]));
+                } else if ((kind.equals("method") || kind.equals("field")) && count >= 5) {
+                    String owner = text.substring(starts[2], ends[2]);
+                    String name = text.substring(starts[3], ends[3]);
+                    String descriptor = text.substring(starts[4], ends[4]);
+
+                    boolean method = kind.equals("method");
+                    String mappedOwner = remapper.map(owner);
+                    String mappedName = method ? remapper.mapMethodName(owner, name, descriptor) : remapper.mapFieldName(owner, name, descriptor);
+                    String mappedDescriptor = method ? remapper.mapMethodDesc(descriptor) : remapper.mapDesc(descriptor);
+                    String fixed = mappings.mapMemberOrName(mappedOwner, mappedName, mappedDescriptor);
+
+                    replacements[2] = mappedOwner;
+                    replacements[3] = fixed != null ? fixed : mappedName;
+                    replacements[4] = mappedDescriptor;
+                }
+            }
+
+            int copied = lineStart;
+            for (int i = 0; i < count; i++) {
+                if (replacements[i] == null) continue;
+
+                result.append(text, copied, starts[i]).append(replacements[i]);
+                copied = ends[i];
+            }
+
+            result.append(text, copied, Math.min(lineEnd + 1, text.length()));
+            lineStart = lineEnd + 1;
+        }
+
+        return header ? bytes : result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Remaps the references of a mixin refmap, which are the string values of its {@code mappings} object and of the
+     * objects in its {@code data} object. Keys, other values and the layout are copied as they are.
+     */
+    byte[] remapRefmap(byte[] bytes) {
+        String json = new String(bytes, StandardCharsets.UTF_8);
+        StringBuilder result = new StringBuilder(json.length() + 64);
+
+        // Only the first two levels of keys are tracked, which is enough to tell where a value is
+        int depth = 0;
+        String section = null;
+        boolean expectingValue = false;
+        int copied = 0;
+
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+
+            switch (c) {
+                case '{', '[' -> {
+                    depth++;
+                    expectingValue = false;
+                }
+                case '}', ']' -> {
+                    depth--;
+                    if (depth <= 1) section = null;
+                }
+                case ':' -> expectingValue = true;
+                case ',' -> expectingValue = false;
+                case '"' -> {
+                    int end = stringEnd(json, i);
+                    if (end == -1) return bytes;
+
+                    if (!expectingValue && depth == 1) {
+                        section = json.substring(i + 1, end);
+                    } else if (expectingValue && isReferenceSection(section, depth)) {
+                        String reference = json.substring(i + 1, end);
+
+                        // Escaped strings are left alone, no valid class or member name needs escaping
+                        if (reference.indexOf('\\') == -1) {
+                            String mapped = mapReference(reference);
+                            if (!mapped.equals(reference)) {
+                                result.append(json, copied, i + 1).append(mapped);
+                                copied = end;
+                            }
+                        }
+                    }
+
+                    expectingValue = false;
+                    i = end;
+                }
+                default -> {
+                }
+            }
+        }
+
+        if (copied == 0) return bytes;
+
+        return result.append(json, copied, json.length()).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isReferenceSection(String section, int depth) {
+        return "mappings".equals(section) && depth == 3 || "data".equals(section) && depth == 4;
+    }
+
+    private static int stringEnd(String json, int start) {
+        for (int i = start + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '"') return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Maps a mixin reference: a class name, a class descriptor, or a member with an optional {@code Lowner;} prefix
+     * and an optional method descriptor or {@code :fieldDescriptor} suffix.
+     */
+    String mapReference(String reference) {
+        String owner = null;
+        int nameStart = 0;
+
+        if (reference.startsWith("L")) {
+            int semicolon = reference.indexOf(';');
+            if (semicolon != -1) {
+                owner = reference.substring(1, semicolon);
+                nameStart = semicolon + 1;
+            }
+        }
+
+        if (owner != null && nameStart == reference.length()) return "L" + mapClass(owner) + ";";
+
+        int methodDesc = reference.indexOf('(', nameStart);
+        int fieldDesc = reference.indexOf(':', nameStart);
+        int nameEnd = methodDesc != -1 ? methodDesc : fieldDesc != -1 ? fieldDesc : reference.length();
+        String name = reference.substring(nameStart, nameEnd);
+
+        if (owner == null && nameEnd == reference.length()) {
+            if (name.indexOf('/') != -1) return mapClass(name);
+
+            String mapped = mappings.mapName(name);
+            return mapped != null ? mapped : name;
+        }
+
+        String descriptor = nameEnd == reference.length() ? null : reference.substring(methodDesc != -1 ? methodDesc : fieldDesc + 1);
+        String mappedOwner = owner != null ? remapper.map(owner) : null;
+        String mappedDescriptor = descriptor == null ? null : methodDesc != -1 ? remapper.mapMethodDesc(descriptor) : remapper.mapDesc(descriptor);
+
+        String mappedName = name;
+        if (owner != null && descriptor != null) {
+            mappedName = methodDesc != -1 ? remapper.mapMethodName(owner, name, descriptor) : remapper.mapFieldName(owner, name, descriptor);
+        }
+
+        String fixed = mappedOwner != null && mappedDescriptor != null ? mappings.mapMemberOrName(mappedOwner, mappedName, mappedDescriptor) : mappings.mapName(mappedName);
+        if (fixed != null) mappedName = fixed;
+
+        StringBuilder builder = new StringBuilder(reference.length() + 16);
+        if (mappedOwner != null) builder.append('L').append(mappedOwner).append(';');
+        builder.append(mappedName);
+        if (mappedDescriptor != null) builder.append(methodDesc != -1 ? "" : ":").append(mappedDescriptor);
+
+        return builder.toString();
+    }
+
+    private String mapClass(String name) {
+        String mapped = remapper.map(name);
+        String fixed = mappings.mapClass(mapped);
+        return fixed != null ? fixed : mapped;
+    }
+}
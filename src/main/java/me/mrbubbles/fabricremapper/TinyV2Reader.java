@@ -0,0 +1,264 @@
+package me.mrbubbles.fabricremapper;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Streaming tokenizer for Tiny v2 mappings.
+ * <p>
+ * Lines are split into tab separated columns in place, in a reused character buffer, and only the columns of the
+ * requested namespaces are turned into strings. Lines other than classes, fields and methods, like parameters and
+ * comments, are skipped without allocating anything.
+ */
+final class TinyV2Reader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives the classes and the members of the current class. A name that is missing in a namespace falls back to
+     * the first namespace, and a name that is the same in both requested namespaces is passed as one instance.
+     */
+    interface Visitor {
+        void visitClass(String original, String from, String to);
+
+        void visitField(String descriptor, String from, String to);
+
+        void visitMethod(String descriptor, String from, String to);
+    }
+
+    private final Reader reader;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private int nextLine;
+    private int indent;
+    private int[] columnStarts = new int[8];
+    private int[] columnEnds = new int[8];
+    private int columnCount;
+    private boolean escaped;
+
+    private TinyV2Reader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the mappings file inside a mappings jar, as published to Maven, without extracting it.
+     */
+    static void readJar(Path jar, String from, String to, Visitor visitor) throws IOException {
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(".tiny")) {
+                    try (Reader reader = new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8)) {
+                        read(reader, from, to, visitor);
+                    }
+                    return;
+                }
+            }
+        }
+
+        throw new IOException("No .tiny file can be found in " + jar);
+    }
+
+    static void read(Reader reader, String from, String to, Visitor visitor) throws IOException {
+        TinyV2Reader tiny = new TinyV2Reader(reader);
+
+        if (!tiny.nextLine() || tiny.indent != 0 || tiny.columnCount < 3 || !tiny.columnEquals(0, "tiny") || !tiny.columnEquals(1, "2")) {
+            throw new IOException("Not a Tiny v2 mappings file");
+        }
+
+        int fromIndex = -1;
+        int toIndex = -1;
+        for (int column = 3; column < tiny.columnCount; column++) {
+            if (tiny.columnEquals(column, from)) fromIndex = column - 3;
+            if (tiny.columnEquals(column, to)) toIndex = column - 3;
+        }
+
+        if (fromIndex == -1 || toIndex == -1) throw new IOException("Mappings do not contain namespaces " + from + " and " + to);
+
+        boolean inClass = false;
+        while (tiny.nextLine()) {
+            if (tiny.indent == 0 && tiny.columnEquals(0, "c")) {
+                String original = tiny.name(1, 0);
+                String fromName = fromIndex == 0 ? original : tiny.name(1, fromIndex);
+                String toName = tiny.sameName(1, fromIndex, toIndex) ? fromName : tiny.name(1, toIndex);
+
+                visitor.visitClass(original, fromName, toName);
+                inClass = true;
+            } else if (tiny.indent == 1 && inClass && tiny.columnCount > 2 && (tiny.columnEquals(0, "f") || tiny.columnEquals(0, "m"))) {
+                String fromName = tiny.name(2, fromIndex);
+                String toName = tiny.sameName(2, fromIndex, toIndex) ? fromName : tiny.name(2, toIndex);
+                String descriptor = tiny.column(1);
+
+                if (tiny.columnEquals(0, "f")) visitor.visitField(descriptor, fromName, toName);
+                else visitor.visitMethod(descriptor, fromName, toName);
+            } else if (tiny.indent == 1 && !inClass && tiny.columnEquals(0, "escaped-names")) {
+                tiny.escaped = true;
+            }
+        }
+    }
+
+    /**
+     * Passes everything to two visitors, so a single read can feed both.
+     */
+    static Visitor tee(Visitor first, Visitor second) {
+        return new Visitor() {
+            @Override
+            public void visitClass(String original, String from, String to) {
+                first.visitClass(original, from, to);
+                second.visitClass(original, from, to);
+            }
+
+            @Override
+            public void visitField(String descriptor, String from, String to) {
+                first.visitField(descriptor, from, to);
+                second.visitField(descriptor, from, to);
+            }
+
+            @Override
+            public void visitMethod(String descriptor, String from, String to) {
+                first.visitMethod(descriptor, from, to);
+                second.visitMethod(descriptor, from, to);
+            }
+        };
+    }
+
+    /**
+     * Moves to the next line and splits it into columns, keeping the whole line in the buffer.
+     */
+    private boolean nextLine() throws IOException {
+        position = nextLine;
+
+        int end;
+        while ((end = indexOfNewline(position)) == -1) {
+            if (eof) {
+                if (position >= limit) return false;
+                end = limit;
+                break;
+            }
+
+            fill();
+        }
+
+        nextLine = end + 1;
+        int lineLimit = end > position && buffer[end - 1] == '\r' ? end - 1 : end;
+
+        indent = 0;
+        while (position + indent < lineLimit && buffer[position + indent] == '\t') indent++;
+
+        columnCount = 0;
+        int start = position + indent;
+        for (int i = start; i <= lineLimit; i++) {
+            if (i == lineLimit || buffer[i] == '\t') {
+                if (columnCount == columnStarts.length) {
+                    columnStarts = Arrays.copyOf(columnStarts, columnCount * 2);
+                    columnEnds = Arrays.copyOf(columnEnds, columnCount * 2);
+                }
+
+                columnStarts[columnCount] = start;
+                columnEnds[columnCount++] = i;
+                start = i + 1;
+            }
+        }
+
+        return true;
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < limit; i++) {
+            if (buffer[i] == '\n') return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads more characters, first moving the current line to the start of the buffer and growing it if the line
+     * does not fit.
+     */
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+
+        if (limit == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read == -1) eof = true;
+        else limit += read;
+    }
+
+    private boolean columnEquals(int column, String value) {
+        int start = columnStarts[column];
+        int length = columnEnds[column] - start;
+        if (length != value.length()) return false;
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != value.charAt(i)) return false;
+        }
+
+        return true;
+    }
+
+    private String column(int column) {
+        String value = new String(buffer, columnStarts[column], columnEnds[column] - columnStarts[column]);
+        return escaped && value.indexOf('\\') != -1 ? unescape(value) : value;
+    }
+
+    /**
+     * The column of a namespace, or of the first namespace if it is missing or empty.
+     */
+    private int nameColumn(int offset, int namespace) {
+        int column = offset + namespace;
+        return column < columnCount && columnEnds[column] > columnStarts[column] ? column : offset;
+    }
+
+    private String name(int offset, int namespace) {
+        return column(nameColumn(offset, namespace));
+    }
+
+    private boolean sameName(int offset, int first, int second) {
+        int firstColumn = nameColumn(offset, first);
+        int secondColumn = nameColumn(offset, second);
+        if (firstColumn == secondColumn) return true;
+
+        int length = columnEnds[firstColumn] - columnStarts[firstColumn];
+        if (length != columnEnds[secondColumn] - columnStarts[secondColumn]) return false;
+
+        return Arrays.equals(buffer, columnStarts[firstColumn], columnEnds[firstColumn], buffer, columnStarts[secondColumn], columnEnds[secondColumn]);
+    }
+
+    private static String unescape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                builder.append(c);
+                continue;
+            }
+
+            switch (value.charAt(++i)) {
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case '0' -> builder.append('\0');
+                default -> builder.append(value.charAt(i));
+            }
+        }
+
+        return builder.toString();
+    }
+}
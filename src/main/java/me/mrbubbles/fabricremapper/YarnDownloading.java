@@ -4,127 +4,108 @@ import me.mrbubbles.fabricremapper.plugin.RemapperPlugin;
 import org.gradle.api.logging.Logger;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.Enumeration;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.HashSet;
-import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
+/**
+ * Resolves yarn mappings and their metadata from a Fabric Maven and meta server, through a {@link Downloader}.
+ * <p>
+ * The shared instance uses the official servers, or the ones given by the {@code fabricremapper.mavenUrl} and
+ * {@code fabricremapper.metaUrl} system properties. Other instances can point anywhere, such as a mirror or a local
+ * stand-in server.
+ */
 public class YarnDownloading {
 
     private static final Logger LOGGER = RemapperPlugin.getLogger();
 
-    public static Path path;
+    private static final String TINY2_KIND = "tiny2-jar";
 
-    public static Path resolve(String mappingsName, Path tempDir) {
-        Path mappingsTemp;
+    public static final Duration DEFAULT_METADATA_TTL = Duration.ofHours(1);
 
-        try {
-            String name = System.getProperty("os.name", "generic").toLowerCase(Locale.ENGLISH);
+    private static final YarnDownloading SHARED = new YarnDownloading(Downloader.shared(),
+            URI.create(System.getProperty("fabricremapper.mavenUrl", "https://maven.fabricmc.net/")),
+            URI.create(System.getProperty("fabricremapper.metaUrl", "https://meta.fabricmc.net/")));
 
-            if (name.contains("win")) {
-                mappingsTemp = tempDir.resolve("mappings.gz");
-            } else {
-                mappingsTemp = tempDir.resolve("mappings" + mappingsName);
-            }
+    private final Downloader downloader;
+    private final URI mavenUrl;
+    private final URI metaUrl;
 
-            try (InputStream inputStream = getMappingsFromMaven(mappingsName)) {
-                Files.copy(inputStream, mappingsTemp, StandardCopyOption.REPLACE_EXISTING);
-            }
-        } catch (Exception e) {
-            LOGGER.error("Error during downloading mappings: " + e.getMessage());
-            return null;
-        }
+    /**
+     * Both base URLs are resolved against, so they should end with a slash.
+     */
+    public YarnDownloading(Downloader downloader, URI mavenUrl, URI metaUrl) {
+        this.downloader = downloader;
+        this.mavenUrl = mavenUrl;
+        this.metaUrl = metaUrl;
+    }
 
-        return mappingsTemp;
+    public static YarnDownloading shared() {
+        return SHARED;
     }
 
-    public static Path resolveTiny2(String mappingsVersion, Path tempDir) {
-        Path mappingsTemp;
-        String fileMappings = "mappings.tiny";
+    /**
+     * Starts downloading the mappings jar of a version in the background if it is not cached yet. The download is
+     * picked up by {@link #resolveTiny2} once it gets to it.
+     */
+    public void prefetch(String mappingsVersion, MappingsCache cache) {
+        if (cache.isOffline()) return;
 
         try {
-            String name = System.getProperty("os.name", "generic").toLowerCase(Locale.ENGLISH);
-
-            if (name.contains("win")) {
-                mappingsTemp = tempDir.resolve("mappings-v2.zip");
-            } else {
-                mappingsTemp = tempDir.resolve("mappings-v2" + mappingsVersion);
-            }
-
-            try (InputStream inputStream = getTiny2Mappings(mappingsVersion)) {
-                Files.copy(inputStream, mappingsTemp, StandardCopyOption.REPLACE_EXISTING);
-            }
+            if (!cache.contains(mappingsVersion, TINY2_KIND, ".jar")) download(getTiny2MappingsUri(mappingsVersion), cache);
+        } catch (IOException e) {
+            LOGGER.error("Error during prefetching mappings: " + e.getMessage());
+        }
+    }
 
-            path = mappingsTemp;
+    /**
+     * Returns the cached Tiny v2 mappings jar of a version. The jar is kept as it was downloaded, the mappings are
+     * read straight out of it by {@link TinyV2Reader}.
+     */
+    public Path resolveTiny2(String mappingsVersion, MappingsCache cache) {
+        try {
+            return cache.get(mappingsVersion, TINY2_KIND, ".jar",
+                    target -> FileUtil.moveAtomically(await(download(getTiny2MappingsUri(mappingsVersion), cache)), target));
         } catch (Exception e) {
             LOGGER.error("Error during resolving Tiny2: " + e.getMessage());
             return null;
         }
+    }
 
-        return extractFileFromZip(mappingsTemp, fileMappings, tempDir);
+    private CompletableFuture<Path> download(URI uri, MappingsCache cache) {
+        String path = uri.getPath();
+        return downloader.download(uri, cache.getDownloadsDir().resolve(path.substring(path.lastIndexOf('/') + 1)));
     }
 
-    private static Path extractFileFromZip(Path zipPath, String targetFileName, Path outputDir) {
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
         try {
-            try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
-                Enumeration<? extends ZipEntry> entries = zipFile.entries();
-                Path outputPath;
-                while (entries.hasMoreElements()) {
-                    ZipEntry entry = entries.nextElement();
-                    if (!entry.isDirectory() && entry.getName().endsWith(".tiny")) {
-                        try (InputStream inputStream = zipFile.getInputStream(entry)) {
-                            outputPath = outputDir.resolve(targetFileName);
-                            Files.copy(inputStream, outputPath, StandardCopyOption.REPLACE_EXISTING);
-                        }
-                        return outputPath;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.error("Error during extracting file: " + e.getMessage());
-            return null;
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
         }
-        LOGGER.error("File " + targetFileName + " cannot be found in " + zipPath);
-        return null;
     }
 
-    private static InputStream getTiny2Mappings(String mappingsVersion) throws IOException, InterruptedException {
-        HttpClient httpClient = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://maven.fabricmc.net/net/fabricmc/yarn/" + mappingsVersion + "/yarn-" + mappingsVersion + "-v2.jar"))
-                .build();
-        return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()).body();
+    private URI getTiny2MappingsUri(String mappingsVersion) {
+        return mavenUrl.resolve("net/fabricmc/yarn/" + mappingsVersion + "/yarn-" + mappingsVersion + "-v2.jar");
     }
 
-    private static InputStream getMappingsFromMaven(String mappingsVersion) throws IOException, InterruptedException {
-        HttpClient httpClient = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://maven.fabricmc.net/net/fabricmc/yarn/" + mappingsVersion + "/yarn-" + mappingsVersion + "-tiny.gz"))
-                .build();
-        return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()).body();
+    public static Set<Integer> getYarnBuilds(String minecraftVersion) {
+        return SHARED.getYarnBuilds(minecraftVersion, MappingsCache.defaultCache(), DEFAULT_METADATA_TTL);
     }
 
-    public static Set<Integer> getYarnBuilds(String minecraftVersion) {
+    public Set<Integer> getYarnBuilds(String minecraftVersion, MappingsCache cache, Duration metadataTtl) {
         Set<Integer> builds = new HashSet<>();
         try {
-            URI uri = new URI("https://meta.fabricmc.net/v2/versions/yarn/" + minecraftVersion);
-            HttpClient httpClient = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder().uri(uri).GET().build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            String responseBody = response.body();
+            String responseBody = getYarnMetadata(minecraftVersion, cache, metadataTtl);
 
             Pattern pattern = Pattern.compile("\"build\":\\s*(\\d+)");
             Matcher matcher = pattern.matcher(responseBody);
@@ -138,8 +119,52 @@ public class YarnDownloading {
         return builds;
     }
 
+    /**
+     * Returns the yarn builds listing of a Minecraft version from the metadata cache. A listing younger than the TTL
+     * is used without any network access. An older one is still used right away while it is revalidated in the
+     * background for the next run, and in offline mode any cached listing is used regardless of its age.
+     */
+    private String getYarnMetadata(String minecraftVersion, MappingsCache cache, Duration metadataTtl) throws IOException {
+        Path metadata = cache.getMetadataDir().resolve("yarn-" + MappingsCache.sanitize(minecraftVersion) + ".json");
+        boolean cached = Files.isRegularFile(metadata);
+
+        if (cached && (cache.isOffline() || isFresh(metadata, metadataTtl))) return Files.readString(metadata);
+        if (cache.isOffline()) {
+            throw new IOException("Yarn metadata of Minecraft " + minecraftVersion + " is not cached and offline mode is enabled");
+        }
+
+        CompletableFuture<Path> refresh = downloader
+                .refresh(metaUrl.resolve("v2/versions/yarn/" + minecraftVersion), metadata)
+                .thenApply(YarnDownloading::touch);
+
+        if (!cached) return Files.readString(await(refresh));
+
+        refresh.exceptionally(e -> {
+            LOGGER.warn("Could not refresh the yarn metadata of Minecraft " + minecraftVersion + ": " + e.getMessage());
+            return null;
+        });
+        return Files.readString(metadata);
+    }
+
+    private static boolean isFresh(Path path, Duration ttl) throws IOException {
+        return Files.getLastModifiedTime(path).toMillis() + ttl.toMillis() > System.currentTimeMillis();
+    }
+
+    private static Path touch(Path path) {
+        // A 304 leaves the file as is, so its age has to be reset by hand
+        try {
+            return Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public static int getLatestYarnBuild(String minecraftVersion) {
-        Set<Integer> builds = getYarnBuilds(minecraftVersion);
+        return SHARED.getLatestYarnBuild(minecraftVersion, MappingsCache.defaultCache(), DEFAULT_METADATA_TTL);
+    }
+
+    public int getLatestYarnBuild(String minecraftVersion, MappingsCache cache, Duration metadataTtl) {
+        Set<Integer> builds = getYarnBuilds(minecraftVersion, cache, metadataTtl);
         int latestBuild = 0;
         for (int build : builds) {
             if (build > latestBuild) latestBuild = build;
@@ -148,6 +173,10 @@ public class YarnDownloading {
     }
 
     public static String getMappingsVersion(String minecraftVersion) {
-        return minecraftVersion + "+build." + getLatestYarnBuild(minecraftVersion);
+        return SHARED.getMappingsVersion(minecraftVersion, MappingsCache.defaultCache(), DEFAULT_METADATA_TTL);
+    }
+
+    public String getMappingsVersion(String minecraftVersion, MappingsCache cache, Duration metadataTtl) {
+        return minecraftVersion + "+build." + getLatestYarnBuild(minecraftVersion, cache, metadataTtl);
     }
 }
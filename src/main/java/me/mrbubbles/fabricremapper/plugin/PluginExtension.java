@@ -1,6 +1,11 @@
 package me.mrbubbles.fabricremapper.plugin;
 
+import me.mrbubbles.fabricremapper.MappingsCache;
+import me.mrbubbles.fabricremapper.RemapService;
+
 import java.io.File;
+import java.util.List;
+import java.util.zip.Deflater;
 
 @SuppressWarnings("unused")
 public class PluginExtension {
@@ -8,6 +13,21 @@ public class PluginExtension {
     private String modName;
     private File buildDir;
     private boolean replaceJar;
+    private File cacheDir;
+    private long maxCacheSize = MappingsCache.DEFAULT_MAX_SIZE;
+    private boolean offline;
+    private boolean singlePass = true;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean incremental;
+    private boolean verbose;
+    private File renameReport;
+    private File metricsReport;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean parallelCompression;
+    private boolean reproducible;
+    private int maxLoadedMappings = RemapService.DEFAULT_MAX_MAPPINGS;
+    private long mappingsIdleTimeout = RemapService.DEFAULT_IDLE_TIMEOUT.toSeconds();
+    private Iterable<File> classPath = List.of();
 
     public void setMappingsVersion(String mappingsVersion) {
         this.mappingsVersion = mappingsVersion;
@@ -41,4 +61,128 @@ public class PluginExtension {
         return replaceJar;
     }
 
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    public long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    public void offline(boolean offline) {
+        this.offline = offline;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public void singlePass(boolean singlePass) {
+        this.singlePass = singlePass;
+    }
+
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void incremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void verbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setRenameReport(File renameReport) {
+        this.renameReport = renameReport;
+    }
+
+    public File getRenameReport() {
+        return renameReport;
+    }
+
+    public void setMetricsReport(File metricsReport) {
+        this.metricsReport = metricsReport;
+    }
+
+    public File getMetricsReport() {
+        return metricsReport;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void parallelCompression(boolean parallelCompression) {
+        this.parallelCompression = parallelCompression;
+    }
+
+    public boolean isParallelCompression() {
+        return parallelCompression;
+    }
+
+    public void reproducible(boolean reproducible) {
+        this.reproducible = reproducible;
+    }
+
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    public void setMaxLoadedMappings(int maxLoadedMappings) {
+        this.maxLoadedMappings = maxLoadedMappings;
+    }
+
+    public int getMaxLoadedMappings() {
+        return maxLoadedMappings;
+    }
+
+    public void setMappingsIdleTimeout(long mappingsIdleTimeout) {
+        this.mappingsIdleTimeout = mappingsIdleTimeout;
+    }
+
+    public long getMappingsIdleTimeout() {
+        return mappingsIdleTimeout;
+    }
+
+    /**
+     * Libraries the mod is compiled against, e.g. {@code configurations.compileClasspath}. They are only resolved
+     * when the remap task runs.
+     */
+    public void setClassPath(Iterable<File> classPath) {
+        this.classPath = classPath;
+    }
+
+    public Iterable<File> getClassPath() {
+        return classPath;
+    }
+
 }
@@ -0,0 +1,26 @@
+package me.mrbubbles.fabricremapper.plugin;
+
+import me.mrbubbles.fabricremapper.RemapService;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.time.Duration;
+
+/**
+ * Gives remap tasks access to the {@link RemapService} of the Gradle daemon. Build services only live for one build,
+ * so the loaded mappings are held by the shared service instead, which outlives the build as long as the daemon keeps
+ * the plugin loaded and releases them by itself once they are idle.
+ */
+public abstract class RemapBuildService implements BuildService<RemapBuildService.Parameters> {
+
+    public interface Parameters extends BuildServiceParameters {
+        Property<Integer> getMaxMappings();
+
+        Property<Long> getIdleTimeout();
+    }
+
+    public RemapService getService() {
+        return RemapService.shared(getParameters().getMaxMappings().get(), Duration.ofSeconds(getParameters().getIdleTimeout().get()));
+    }
+}
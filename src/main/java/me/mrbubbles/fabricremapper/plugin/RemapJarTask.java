@@ -0,0 +1,112 @@
+package me.mrbubbles.fabricremapper.plugin;
+
+import me.mrbubbles.fabricremapper.IncrementalRemap;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.*;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+
+/**
+ * Remaps a jar from intermediary to yarn names.
+ * <p>
+ * The remap itself runs through the Worker API, so tasks of several projects can remap in parallel. It runs in the
+ * plugin's classloader to reach the {@link RemapBuildService}, which keeps the loaded mappings across builds.
+ */
+@CacheableTask
+public abstract class RemapJarTask extends DefaultTask {
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getInputJar();
+
+    @Classpath
+    public abstract ConfigurableFileCollection getClassPath();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutputJar();
+
+    /**
+     * The state an incremental remap keeps next to the output jar, which is only valid together with that jar.
+     */
+    @OutputFile
+    public Provider<RegularFile> getIncrementalState() {
+        return getOutputJar().map(jar -> () -> IncrementalRemap.statePath(jar.getAsFile().toPath()).toFile());
+    }
+
+    @OutputFile
+    @Optional
+    public abstract RegularFileProperty getRenameReport();
+
+    @OutputFile
+    @Optional
+    public abstract RegularFileProperty getMetricsReport();
+
+    @Input
+    public abstract Property<String> getMappingsVersion();
+
+    @Input
+    public abstract Property<Boolean> getSinglePass();
+
+    @Input
+    public abstract Property<Integer> getCompressionLevel();
+
+    @Input
+    public abstract Property<Boolean> getParallelCompression();
+
+    @Input
+    public abstract Property<Boolean> getReproducible();
+
+    @Internal
+    public abstract DirectoryProperty getCacheDir();
+
+    @Internal
+    public abstract Property<Long> getMaxCacheSize();
+
+    @Internal
+    public abstract Property<Boolean> getOffline();
+
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    @Internal
+    public abstract Property<Boolean> getIncremental();
+
+    @Internal
+    public abstract Property<Boolean> getVerbose();
+
+    @Internal
+    public abstract Property<RemapBuildService> getRemapService();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void remap() {
+        getWorkerExecutor().noIsolation().submit(RemapWorkAction.class, parameters -> {
+            parameters.getRemapService().set(getRemapService());
+            parameters.getInputJar().set(getInputJar());
+            parameters.getOutputJar().set(getOutputJar());
+            parameters.getClassPath().from(getClassPath());
+            parameters.getMappingsVersion().set(getMappingsVersion());
+            parameters.getSinglePass().set(getSinglePass());
+            parameters.getCacheDir().set(getCacheDir());
+            parameters.getMaxCacheSize().set(getMaxCacheSize());
+            parameters.getOffline().set(getOffline());
+            parameters.getThreads().set(getThreads());
+            parameters.getIncremental().set(getIncremental());
+            parameters.getVerbose().set(getVerbose());
+            parameters.getRenameReport().set(getRenameReport());
+            parameters.getMetricsReport().set(getMetricsReport());
+            parameters.getCompressionLevel().set(getCompressionLevel());
+            parameters.getParallelCompression().set(getParallelCompression());
+            parameters.getReproducible().set(getReproducible());
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package me.mrbubbles.fabricremapper.plugin;
+
+import me.mrbubbles.fabricremapper.MappingsCache;
+import me.mrbubbles.fabricremapper.RemapEngine;
+import me.mrbubbles.fabricremapper.RemapOptions;
+import me.mrbubbles.fabricremapper.RemapService;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.File;
+
+public abstract class RemapWorkAction implements WorkAction<RemapWorkAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        RegularFileProperty getInputJar();
+
+        RegularFileProperty getOutputJar();
+
+        ConfigurableFileCollection getClassPath();
+
+        Property<String> getMappingsVersion();
+
+        Property<Boolean> getSinglePass();
+
+        DirectoryProperty getCacheDir();
+
+        Property<Long> getMaxCacheSize();
+
+        Property<Boolean> getOffline();
+
+        Property<Integer> getThreads();
+
+        Property<Boolean> getIncremental();
+
+        Property<Boolean> getVerbose();
+
+        RegularFileProperty getRenameReport();
+
+        RegularFileProperty getMetricsReport();
+
+        Property<Integer> getCompressionLevel();
+
+        Property<Boolean> getParallelCompression();
+
+        Property<Boolean> getReproducible();
+
+        Property<RemapBuildService> getRemapService();
+    }
+
+    @Override
+    public void execute() {
+        Parameters parameters = getParameters();
+        File input = parameters.getInputJar().get().getAsFile();
+
+        RemapOptions options = new RemapOptions();
+        options.setCache(new MappingsCache(parameters.getCacheDir().get().getAsFile().toPath(), parameters.getMaxCacheSize().get(), parameters.getOffline().get()));
+        options.singlePass(parameters.getSinglePass().get());
+        options.setThreads(parameters.getThreads().get());
+        options.incremental(parameters.getIncremental().get());
+        options.verbose(parameters.getVerbose().get());
+        options.setCompressionLevel(parameters.getCompressionLevel().get());
+        options.parallelCompression(parameters.getParallelCompression().get());
+        options.reproducible(parameters.getReproducible().get());
+        options.setClassPath(parameters.getClassPath().getFiles().stream().map(File::toPath).toList());
+        if (parameters.getRenameReport().isPresent()) options.setRenameReport(parameters.getRenameReport().get().getAsFile().toPath());
+        if (parameters.getMetricsReport().isPresent()) options.setMetricsReport(parameters.getMetricsReport().get().getAsFile().toPath());
+
+        RemapEngine engine = new RemapEngine(Logging.getLogger(RemapJarTask.class), options);
+        RemapService service = parameters.getRemapService().get().getService();
+        if (!service.remap(engine, input.toPath(), parameters.getOutputJar().get().getAsFile().toPath(), parameters.getMappingsVersion().get()).isSuccess()) {
+            throw new GradleException("Remapping '" + input.getName() + "' failed, see the log for details");
+        }
+    }
+}
@@ -1,39 +1,67 @@
 package me.mrbubbles.fabricremapper.plugin;
 
-import me.mrbubbles.fabricremapper.Main;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
 
-import java.nio.file.FileSystems;
-import java.nio.file.Paths;
+import java.io.File;
 
 public class RemapperPlugin implements Plugin<Project> {
 
-    private static Logger LOGGER;
+    private static final Logger LOGGER = Logging.getLogger(RemapperPlugin.class);
 
+    /**
+     * Logger of the static helpers. It does not depend on a project, since one plugin class is shared by all projects
+     * of a build and by code that runs without a project, like the CLI.
+     */
     public static Logger getLogger() {
         return LOGGER;
     }
 
     @Override
     public void apply(Project project) {
-        LOGGER = project.getLogger();
         PluginExtension extension = project.getExtensions().create("remapJarToIntermediary", PluginExtension.class);
+        extension.setCacheDir(new File(project.getGradle().getGradleUserHomeDir(), "caches/fabric-remapper/mappings"));
+        extension.offline(project.getGradle().getStartParameter().isOffline());
 
-        project.task("remapJarToIntermediary").doLast(task -> {
-            String baseIOPath = String.join(FileSystems.getDefault().getSeparator(),
-                    extension.getBuildDir().getAbsolutePath(), "libs", extension.getModName());
-
-            try {
-                Main.remap(
-                        Paths.get(baseIOPath + ".jar"),
-                        Paths.get(baseIOPath + (extension.isReplaceJar() ? ".jar" : "-remapped.jar")),
-                        extension.getMappingsVersion(),
-                        Paths.get(extension.getBuildDir().getAbsolutePath(), "tmp"));
-            } catch (Exception e) {
-                LOGGER.error("An error occurred while remapping", e);
-            }
+        Provider<RemapBuildService> remapService = project.getGradle().getSharedServices().registerIfAbsent("fabricRemapper", RemapBuildService.class, spec -> {
+            spec.getParameters().getMaxMappings().set(project.provider(extension::getMaxLoadedMappings));
+            spec.getParameters().getIdleTimeout().set(project.provider(extension::getMappingsIdleTimeout));
         });
+
+        project.getTasks().register("remapJarToIntermediary", RemapJarTask.class, task -> {
+            task.getRemapService().set(remapService);
+            task.usesService(remapService);
+            task.getInputJar().fileProvider(project.provider(() -> libsFile(extension, ".jar")));
+            task.getClassPath().from(project.provider(extension::getClassPath));
+            task.getOutputJar().fileProvider(project.provider(() -> libsFile(extension, extension.isReplaceJar() ? ".jar" : "-remapped.jar")));
+            task.getMappingsVersion().set(project.provider(extension::getMappingsVersion));
+            task.getSinglePass().set(project.provider(extension::isSinglePass));
+            task.getCacheDir().fileProvider(project.provider(extension::getCacheDir));
+            task.getMaxCacheSize().set(project.provider(extension::getMaxCacheSize));
+            task.getOffline().set(project.provider(extension::isOffline));
+            task.getThreads().set(project.provider(extension::getThreads));
+            task.getIncremental().set(project.provider(extension::isIncremental));
+            task.getVerbose().set(project.provider(extension::isVerbose));
+            task.getRenameReport().fileProvider(project.provider(extension::getRenameReport));
+            task.getMetricsReport().fileProvider(project.provider(extension::getMetricsReport));
+            task.getCompressionLevel().set(project.provider(extension::getCompressionLevel));
+            task.getParallelCompression().set(project.provider(extension::isParallelCompression));
+            task.getReproducible().set(project.provider(extension::isReproducible));
+
+            // Remapping in place rewrites the task's own input, so it can neither be up-to-date nor cached
+            task.getOutputs().upToDateWhen(t -> !extension.isReplaceJar());
+            task.getOutputs().cacheIf(t -> !extension.isReplaceJar());
+        });
+
+        project.getPlugins().withId("java", plugin ->
+                project.getTasks().named("remapJarToIntermediary").configure(task -> task.dependsOn(JavaPlugin.JAR_TASK_NAME)));
+    }
+
+    private static File libsFile(PluginExtension extension, String suffix) {
+        return new File(new File(extension.getBuildDir(), "libs"), extension.getModName() + suffix);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloaderTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz".repeat(1000).getBytes(StandardCharsets.UTF_8);
+    private static final String FILE = "net/fabricmc/yarn/1.20.1+build.1/yarn-1.20.1+build.1-v2.jar";
+
+    @TempDir
+    Path dir;
+
+    private StandInServer server;
+    private Downloader downloader;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StandInServer();
+        downloader = new Downloader(HttpClient.newHttpClient());
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void resumesPartialDownload() throws Exception {
+        server.put(FILE, CONTENT, "\"v1\"");
+        Path target = dir.resolve("mappings.jar");
+        Files.write(dir.resolve("mappings.jar.part"), Arrays.copyOf(CONTENT, 1000));
+        writeValidators(dir.resolve("mappings.jar.validators"), "\"v1\"");
+
+        downloader.download(server.uri(FILE), target).join();
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        StandInServer.Request request = server.getRequests(FILE).get(0);
+        assertEquals("bytes=1000-", request.range());
+        assertEquals("\"v1\"", request.ifRange());
+    }
+
+    @Test
+    void restartsDownloadWhenIfRangeDoesNotMatch() throws Exception {
+        server.put(FILE, CONTENT, "\"v2\"");
+        Path target = dir.resolve("mappings.jar");
+        Files.write(dir.resolve("mappings.jar.part"), "stale bytes of an older version".getBytes(StandardCharsets.UTF_8));
+        writeValidators(dir.resolve("mappings.jar.validators"), "\"v1\"");
+
+        downloader.download(server.uri(FILE), target).join();
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        assertEquals("\"v1\"", server.getRequests(FILE).get(0).ifRange());
+        assertTrue(Files.readString(dir.resolve("mappings.jar.validators")).contains("v2"));
+    }
+
+    @Test
+    void revalidatesWithETag() throws Exception {
+        server.put("v2/versions/yarn/1.20.1", "[{\"build\": 1}]".getBytes(StandardCharsets.UTF_8), "\"meta\"");
+        Path target = dir.resolve("yarn.json");
+        URI uri = server.uri("v2/versions/yarn/1.20.1");
+
+        downloader.refresh(uri, target).join();
+        long modified = Files.getLastModifiedTime(target).toMillis();
+
+        assertEquals(target, downloader.refresh(uri, target).join());
+
+        List<StandInServer.Request> requests = server.getRequests("v2/versions/yarn/1.20.1");
+        assertEquals(2, requests.size());
+        assertNull(requests.get(0).ifNoneMatch());
+        assertEquals("\"meta\"", requests.get(1).ifNoneMatch());
+        assertEquals("[{\"build\": 1}]", Files.readString(target));
+        assertEquals(modified, Files.getLastModifiedTime(target).toMillis());
+    }
+
+    @Test
+    void revalidatesFinishedDownload() throws Exception {
+        server.put(FILE, CONTENT, "\"v1\"");
+        Path target = dir.resolve("mappings.jar");
+
+        CompletableFuture<Path> first = downloader.download(server.uri(FILE), target);
+        first.join();
+        CompletableFuture<Path> second = downloader.download(server.uri(FILE), target);
+
+        assertNotSame(first, second);
+        assertEquals(target, second.join());
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+
+        List<StandInServer.Request> requests = server.getRequests(FILE);
+        assertEquals(2, requests.size());
+        assertEquals("\"v1\"", requests.get(1).ifNoneMatch());
+    }
+
+    @Test
+    void rejectsSha256Mismatch() {
+        server.put(FILE, CONTENT, "\"v1\"");
+        server.put(FILE + ".sha256", "0".repeat(64).getBytes(StandardCharsets.UTF_8), "\"sha256\"");
+
+        assertMismatch("SHA-256");
+    }
+
+    @Test
+    void rejectsSha1Mismatch() {
+        server.put(FILE, CONTENT, "\"v1\"");
+        server.put(FILE + ".sha1", "0".repeat(40).getBytes(StandardCharsets.UTF_8), "\"sha1\"");
+
+        assertMismatch("SHA-1");
+    }
+
+    @Test
+    void acceptsMatchingChecksum() throws Exception {
+        server.put(FILE, CONTENT, "\"v1\"");
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+        server.put(FILE + ".sha256", (sha256 + "  yarn-1.20.1+build.1-v2.jar\n").getBytes(StandardCharsets.UTF_8), "\"sha256\"");
+
+        Path target = dir.resolve("mappings.jar");
+        downloader.download(server.uri(FILE), target).join();
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+    }
+
+    @Test
+    void failsWhenChecksumCannotBeFetched() {
+        server.put(FILE, CONTENT, "\"v1\"");
+        server.fail(FILE + ".sha256", 503);
+        Path target = dir.resolve("mappings.jar");
+
+        CompletionException exception = assertThrows(CompletionException.class, () -> downloader.download(server.uri(FILE), target).join());
+
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertTrue(exception.getCause().getMessage().contains("HTTP 503"), exception.getCause().getMessage());
+        assertFalse(Files.exists(target));
+        assertTrue(server.getRequests(FILE + ".sha1").isEmpty());
+    }
+
+    @Test
+    void acceptsDownloadWithoutPublishedChecksum() throws Exception {
+        server.put(FILE, CONTENT, "\"v1\"");
+        Path target = dir.resolve("mappings.jar");
+
+        downloader.download(server.uri(FILE), target).join();
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        assertEquals(1, server.getRequests(FILE + ".sha256").size());
+        assertEquals(1, server.getRequests(FILE + ".sha1").size());
+    }
+
+    private void assertMismatch(String algorithm) {
+        Path target = dir.resolve("mappings.jar");
+
+        CompletionException exception = assertThrows(CompletionException.class, () -> downloader.download(server.uri(FILE), target).join());
+
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertTrue(exception.getCause().getMessage().startsWith(algorithm + " mismatch"), exception.getCause().getMessage());
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(dir.resolve("mappings.jar.part")));
+    }
+
+    private static void writeValidators(Path path, String etag) throws IOException {
+        Properties validators = new Properties();
+        validators.setProperty("etag", etag);
+
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            validators.store(outputStream, null);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixupClassVisitorTest {
+
+    private static final String TINY = """
+            tiny\t2\t0\tintermediary\tnamed
+            c\tnet/minecraft/class_1\tnet/minecraft/block/Block
+            \tm\t(Lnet/minecraft/class_2;)V\tmethod_1\tonPlaced
+            \tf\tI\tfield_1\thardness
+            c\tnet/minecraft/class_2\tnet/minecraft/item/Item
+            c\tnet/minecraft/class_3\tnet/minecraft/util/Callback
+            \tm\t()V\tmethod_3\trun
+            """;
+
+    private static final Handle METAFACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;",
+            false);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void skipsClassWithoutMappedNames() throws IOException {
+        byte[] bytes = classWith(method -> {
+            method.visitLdcInsn("net.minecraft.Unmapped");
+            method.visitInsn(Opcodes.POP);
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "mod/Helper", "help", "(Lnet/minecraft/block/Block;)V", false);
+        });
+
+        assertFalse(FixupClassVisitor.mightChange(bytes, index()));
+    }
+
+    @Test
+    void findsMethodrefByName() throws IOException {
+        // A call through a subclass TinyRemapper could not resolve, so only the name is still intermediary
+        assertChanges(classWith(method -> {
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "mod/CustomBlock", "method_1", "(Lnet/minecraft/item/Item;)V", false);
+        }));
+    }
+
+    @Test
+    void findsMethodrefByOwnerNameAndDescriptor() throws IOException {
+        assertChanges(classWith(method -> {
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "net/minecraft/block/Block", "method_1", "(Lnet/minecraft/item/Item;)V", false);
+        }));
+    }
+
+    @Test
+    void findsMethodrefByOwner() throws IOException {
+        assertChanges(classWith(method -> method.visitMethodInsn(Opcodes.INVOKESTATIC, "net/minecraft/class_2", "create", "()V", false)));
+    }
+
+    @Test
+    void findsFieldrefByName() throws IOException {
+        assertChanges(classWith(method -> {
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitFieldInsn(Opcodes.GETFIELD, "net/minecraft/block/Block", "field_1", "I");
+            method.visitInsn(Opcodes.POP);
+        }));
+    }
+
+    @Test
+    void findsInvokeDynamicName() throws IOException {
+        // A lambda implementing Callback.method_3
+        assertChanges(classWith(method -> {
+            method.visitInvokeDynamicInsn("method_3", "()Lnet/minecraft/util/Callback;", METAFACTORY,
+                    Type.getType("()V"), new Handle(Opcodes.H_INVOKESTATIC, "mod/Test", "lambda$run$0", "()V", false), Type.getType("()V"));
+            method.visitInsn(Opcodes.POP);
+        }));
+    }
+
+    @Test
+    void findsBootstrapMethodName() throws IOException {
+        Handle bootstrap = new Handle(Opcodes.H_INVOKESTATIC, "net/minecraft/block/Block", "method_1", "(Lnet/minecraft/item/Item;)V", false);
+
+        assertChanges(classWith(method -> {
+            method.visitInvokeDynamicInsn("get", "()Ljava/lang/Object;", bootstrap);
+            method.visitInsn(Opcodes.POP);
+        }));
+    }
+
+    @Test
+    void findsStringConstants() throws IOException {
+        for (String constant : new String[]{"net/minecraft/class_1", "net.minecraft.class_1", "method_1"}) {
+            assertChanges(classWith(method -> {
+                method.visitLdcInsn(constant);
+                method.visitInsn(Opcodes.POP);
+            }));
+        }
+    }
+
+    private void assertChanges(byte[] bytes) throws IOException {
+        MappingsIndex mappings = index();
+
+        assertEquals(Set.of("run()V"), FixupClassVisitor.changedMethods(new ClassReader(bytes), mappings));
+        assertTrue(FixupClassVisitor.mightChange(bytes, mappings));
+    }
+
+    private MappingsIndex index() throws IOException {
+        Path path = dir.resolve("mappings.idx");
+        MappingsIndex.write(MappingSet.read(new BufferedReader(new StringReader(TINY)), "intermediary", "named"), path);
+        return MappingsIndex.open(path);
+    }
+
+    /**
+     * A class named in the target namespace, as TinyRemapper leaves it, with a single method {@code run()V}.
+     */
+    private static byte[] classWith(Consumer<MethodVisitor> body) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "mod/Test", null, "java/lang/Object", null);
+
+        MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "run", "()V", null, null);
+        method.visitCode();
+        body.accept(method);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+}
@@ -0,0 +1,250 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalRemapTest {
+
+    private static final String FINGERPRINT = "mappings/settings";
+
+    @TempDir
+    Path dir;
+
+    private final RemapOptions options = options();
+    private final MappingLookup mappings = new Renames(Map.of("mod/Renamed", "mod/Z", "mod/Other", "mod/A"));
+    private final List<Set<String>> remapped = new ArrayList<>();
+
+    @Test
+    void incrementalRemapGivesSameJarAsFullRemap() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("fabric.mod.json", "{\"id\": \"test\"}".getBytes(StandardCharsets.UTF_8));
+        entries.put("mod/Renamed.class", classBytes("mod/Renamed", "java/lang/Object"));
+        entries.put("assets/test/lang/en_us.json", "{}".getBytes(StandardCharsets.UTF_8));
+        entries.put("mod/Other.class", classBytes("mod/Other", "java/lang/Object"));
+        entries.put("mod/Main.class", classBytes("mod/Main", "java/lang/Object"));
+
+        Path input = writeJar(dir.resolve("input.jar"), entries);
+        Path output = dir.resolve("output.jar");
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        entries.put("mod/Other.class", classBytes("mod/Other", "java/lang/Object", "changed"));
+        writeJar(input, entries);
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        Path full = dir.resolve("full.jar");
+        remap(input, input, full);
+
+        assertEquals(Set.of("mod/Other.class"), remapped.get(1));
+        assertArrayEquals(Files.readAllBytes(full), Files.readAllBytes(output));
+    }
+
+    @Test
+    void skipsUnchangedInput() throws IOException {
+        Path input = writeJar(dir.resolve("input.jar"), mod());
+        Path output = dir.resolve("output.jar");
+
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+        byte[] first = Files.readAllBytes(output);
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        assertEquals(1, remapped.size());
+        assertArrayEquals(first, Files.readAllBytes(output));
+    }
+
+    @Test
+    void remapsOnlyChangedEntries() throws IOException {
+        Map<String, byte[]> entries = mod();
+        Path input = writeJar(dir.resolve("input.jar"), entries);
+        Path output = dir.resolve("output.jar");
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        entries.put("mod/Main.class", classBytes("mod/Main", "java/lang/Object", "changed"));
+        entries.put("mod/Added.class", classBytes("mod/Added", "java/lang/Object"));
+        writeJar(input, entries);
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        assertEquals(Set.of("mod/Main.class", "mod/Added.class"), remapped.get(1));
+        assertEquals(List.of("mod/Added.class", "mod/Main.class", "mod/Z.class", "fabric.mod.json"), entryNames(output));
+    }
+
+    @Test
+    void dropsDeletedEntries() throws IOException {
+        Map<String, byte[]> entries = mod();
+        Path input = writeJar(dir.resolve("input.jar"), entries);
+        Path output = dir.resolve("output.jar");
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        entries.remove("mod/Main.class");
+        writeJar(input, entries);
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        assertEquals(1, remapped.size());
+        assertEquals(List.of("mod/Z.class", "fabric.mod.json"), entryNames(output));
+    }
+
+    @Test
+    void remapsSubclassesOfChangedClasses() throws IOException {
+        Map<String, byte[]> entries = mod();
+        entries.put("mod/Base.class", classBytes("mod/Base", "java/lang/Object"));
+        entries.put("mod/Middle.class", classBytes("mod/Middle", "mod/Base"));
+        entries.put("mod/Leaf.class", classBytes("mod/Leaf", "mod/Middle"));
+        Path input = writeJar(dir.resolve("input.jar"), entries);
+        Path output = dir.resolve("output.jar");
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        // The base class now extends a Minecraft class, which changes how the classes below it are remapped
+        entries.put("mod/Base.class", classBytes("mod/Base", "net/minecraft/class_1"));
+        writeJar(input, entries);
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        assertEquals(Set.of("mod/Base.class", "mod/Middle.class", "mod/Leaf.class"), remapped.get(1));
+    }
+
+    @Test
+    void remapsSubclassesOfDeletedClasses() throws IOException {
+        Map<String, byte[]> entries = mod();
+        entries.put("mod/Base.class", classBytes("mod/Base", "java/lang/Object"));
+        entries.put("mod/Leaf.class", classBytes("mod/Leaf", "mod/Base"));
+        Path input = writeJar(dir.resolve("input.jar"), entries);
+        Path output = dir.resolve("output.jar");
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        entries.remove("mod/Base.class");
+        writeJar(input, entries);
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        assertEquals(Set.of("mod/Leaf.class"), remapped.get(1));
+    }
+
+    @Test
+    void remapsInFullWhenOutputWasReplaced() throws IOException {
+        Path input = writeJar(dir.resolve("input.jar"), mod());
+        Path output = dir.resolve("output.jar");
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        // For example restored from the build cache by another build
+        Files.setLastModifiedTime(output, FileTime.fromMillis(Files.getLastModifiedTime(output).toMillis() - 60_000));
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+
+        assertEquals(2, remapped.size());
+        assertEquals(mod().keySet(), remapped.get(1));
+    }
+
+    @Test
+    void remapsInFullWhenFingerprintChanges() throws IOException {
+        Path input = writeJar(dir.resolve("input.jar"), mod());
+        Path output = dir.resolve("output.jar");
+        IncrementalRemap.remap(input, output, FINGERPRINT, mappings, options, this::remap);
+        IncrementalRemap.remap(input, output, FINGERPRINT + "/other", mappings, options, this::remap);
+
+        assertEquals(mod().keySet(), remapped.get(1));
+    }
+
+    private static Map<String, byte[]> mod() {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("fabric.mod.json", "{\"id\": \"test\"}".getBytes(StandardCharsets.UTF_8));
+        entries.put("mod/Renamed.class", classBytes("mod/Renamed", "java/lang/Object"));
+        entries.put("mod/Main.class", classBytes("mod/Main", "java/lang/Object"));
+        return entries;
+    }
+
+    private static List<String> entryNames(Path jar) throws IOException {
+        try (RawZipFile zipFile = RawZipFile.open(jar)) {
+            return zipFile.entries().stream().map(RawZipFile.Entry::name).toList();
+        }
+    }
+
+    /**
+     * Lays a jar out like the engine does: the classes written by a remapper in no particular order, then merged with
+     * the other entries by {@link RemapUtil#addNonClassEntries}.
+     */
+    private void remap(Path input, Path classPath, Path output) throws IOException {
+        Path classes = Files.createTempFile(dir, "classes", ".jar");
+
+        try (RawZipFile inputZip = RawZipFile.open(input);
+             RawZipWriter classesZip = new RawZipWriter(classes, options)) {
+            List<RawZipFile.Entry> inputEntries = new ArrayList<>(inputZip.entries());
+            remapped.add(inputEntries.stream().map(RawZipFile.Entry::name).collect(Collectors.toSet()));
+
+            for (int i = inputEntries.size() - 1; i >= 0; i--) {
+                RawZipFile.Entry entry = inputEntries.get(i);
+                if (!entry.name().endsWith(".class")) continue;
+
+                String name = entry.name().substring(0, entry.name().length() - ".class".length());
+                String mapped = mappings.mapClass(name);
+                classesZip.write((mapped != null ? mapped : name) + ".class", inputZip.read(entry));
+            }
+        }
+
+        RemapUtil.addNonClassEntries(classes, input, output, null, mappings, options);
+        Files.delete(classes);
+    }
+
+    static Path writeJar(Path jar, Map<String, byte[]> entries) throws IOException {
+        Path part = Files.createTempFile(jar.toAbsolutePath().getParent(), "jar", ".part");
+
+        try (RawZipWriter writer = new RawZipWriter(part)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writer.write(entry.getKey(), entry.getValue());
+            }
+        }
+
+        FileUtil.moveAtomically(part, jar);
+        return jar;
+    }
+
+    static byte[] classBytes(String name, String superName, String... fields) {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, superName, null);
+
+        for (String field : fields) {
+            classWriter.visitField(Opcodes.ACC_PUBLIC, field, "I", null, null).visitEnd();
+        }
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static RemapOptions options() {
+        RemapOptions options = new RemapOptions();
+        options.reproducible(true);
+        return options;
+    }
+
+    /**
+     * Renames classes only.
+     */
+    private record Renames(Map<String, String> classes) implements MappingLookup {
+
+        @Override
+        public String mapClass(String name) {
+            return classes.get(name);
+        }
+
+        @Override
+        public String mapMember(String owner, String name, String descriptor) {
+            return null;
+        }
+
+        @Override
+        public String mapName(String name) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingsIndexTest {
+
+    private static final String TINY = """
+            tiny\t2\t0\tintermediary\tnamed
+            c\tnet/minecraft/class_1\tnet/minecraft/block/Block
+            \tf\tI\tfield_1\thardness
+            \tm\t(Lnet/minecraft/class_2;)V\tmethod_1\tonPlaced
+            \tm\t()V\tmethod_2\ttick
+            \tm\t()V\t<init>\t<init>
+            c\tnet/minecraft/class_2\tnet/minecraft/item/Item
+            \tm\t()V\tmethod_2\tupdate
+            \tm\t(I)Lnet/minecraft/class_1;\tmethod_3\tgetBlock
+            c\tnet/minecraft/class_3\tnet/minecraft/class_3
+            \tf\tJ\tfield_2\tfield_2
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void looksUpClasses() throws IOException {
+        MappingsIndex index = roundTrip(TINY);
+
+        assertEquals("net/minecraft/block/Block", index.mapClass("net/minecraft/class_1"));
+        assertEquals("net/minecraft/item/Item", index.mapClass("net/minecraft/class_2"));
+        assertNull(index.mapClass("net/minecraft/class_3"));
+        assertNull(index.mapClass("net/minecraft/class_4"));
+        assertNull(index.mapClass("net/minecraft/class_"));
+        assertNull(index.mapClass("net/minecraft/class_10"));
+        assertNull(index.mapClass("net/minecraft/block/Block"));
+    }
+
+    @Test
+    void looksUpMembersByOwnerNameAndDescriptor() throws IOException {
+        MappingsIndex index = roundTrip(TINY);
+
+        assertEquals("hardness", index.mapMember("net/minecraft/block/Block", "field_1", "I"));
+        assertEquals("onPlaced", index.mapMember("net/minecraft/block/Block", "method_1", "(Lnet/minecraft/item/Item;)V"));
+        assertEquals("tick", index.mapMember("net/minecraft/block/Block", "method_2", "()V"));
+        assertEquals("update", index.mapMember("net/minecraft/item/Item", "method_2", "()V"));
+        assertEquals("getBlock", index.mapMember("net/minecraft/item/Item", "method_3", "(I)Lnet/minecraft/block/Block;"));
+
+        // Owners and descriptors are in the target namespace
+        assertNull(index.mapMember("net/minecraft/class_1", "field_1", "I"));
+        assertNull(index.mapMember("net/minecraft/block/Block", "method_1", "(Lnet/minecraft/class_2;)V"));
+        assertNull(index.mapMember("net/minecraft/block/Block", "field_1", "J"));
+        assertNull(index.mapMember("net/minecraft/item/Item", "field_1", "I"));
+        assertNull(index.mapMember("net/minecraft/block/Block", "<init>", "()V"));
+        assertNull(index.mapMember("net/minecraft/class_3", "field_2", "J"));
+    }
+
+    @Test
+    void looksUpNamesWithoutConflicts() throws IOException {
+        MappingsIndex index = roundTrip(TINY);
+
+        assertEquals("hardness", index.mapName("field_1"));
+        assertEquals("onPlaced", index.mapName("method_1"));
+        assertEquals("getBlock", index.mapName("method_3"));
+        // method_2 maps to tick and to update, so it can only be found through its owner
+        assertNull(index.mapName("method_2"));
+        assertNull(index.mapName("field_2"));
+        assertNull(index.mapName("method_4"));
+    }
+
+    @Test
+    void followsCollisionChains() throws IOException {
+        // "Aa" and "BB" have the same hash code, and so does every key made of them at the same positions
+        MappingsIndex index = roundTrip("""
+                tiny\t2\t0\tintermediary\tnamed
+                c\tAaAa\tFirst
+                \tf\tI\tAaBB\tfirstField
+                \tf\tI\tBBAa\tsecondField
+                c\tBBBB\tSecond
+                \tm\t()V\tAaAa\tfirstMethod
+                c\tAaBB\tThird
+                """);
+
+        assertEquals("First", index.mapClass("AaAa"));
+        assertEquals("Second", index.mapClass("BBBB"));
+        assertEquals("Third", index.mapClass("AaBB"));
+        assertNull(index.mapClass("BBAa"));
+
+        assertEquals("firstField", index.mapMember("First", "AaBB", "I"));
+        assertEquals("secondField", index.mapMember("First", "BBAa", "I"));
+        assertEquals("firstMethod", index.mapMember("Second", "AaAa", "()V"));
+        assertNull(index.mapMember("First", "BBBB", "I"));
+        assertNull(index.mapMember("Second", "BBBB", "()V"));
+
+        assertEquals("firstField", index.mapName("AaBB"));
+        assertEquals("secondField", index.mapName("BBAa"));
+        assertNull(index.mapName("BBBB"));
+    }
+
+    @Test
+    void agreesWithMappingSetForLargeMappings() throws IOException {
+        StringBuilder tiny = new StringBuilder("tiny\t2\t0\tintermediary\tnamed\n");
+        for (int i = 0; i < 5000; i++) {
+            tiny.append("c\tnet/minecraft/class_").append(i).append("\tnet/minecraft/Named").append(i).append('\n');
+            tiny.append("\tf\tLnet/minecraft/class_").append((i + 1) % 5000).append(";\tfield_").append(i).append("\tvalue").append(i).append('\n');
+            tiny.append("\tm\t()V\tmethod_").append(i % 100).append("\tupdate").append(i).append('\n');
+        }
+
+        MappingSet mappings = read(tiny.toString());
+        MappingsIndex index = roundTrip(tiny.toString());
+
+        for (Map.Entry<String, String> entry : mappings.getClasses().entrySet()) {
+            assertEquals(entry.getValue(), index.mapClass(entry.getKey()));
+            assertNull(index.mapClass(entry.getKey() + "$1"));
+        }
+
+        for (Map.Entry<String, String> entry : mappings.getMembers().entrySet()) {
+            String key = entry.getKey();
+            int dot = key.indexOf('.');
+            int semicolon = key.indexOf(';', dot);
+
+            assertEquals(entry.getValue(), index.mapMember(key.substring(0, dot), key.substring(dot + 1, semicolon), key.substring(semicolon + 1)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(index.mapName("method_" + i));
+        }
+        assertEquals("value42", index.mapName("field_42"));
+    }
+
+    @Test
+    void handlesEmptyMappings() throws IOException {
+        MappingsIndex index = roundTrip("tiny\t2\t0\tintermediary\tnamed\n");
+
+        assertNull(index.mapClass("net/minecraft/class_1"));
+        assertNull(index.mapMember("net/minecraft/block/Block", "field_1", "I"));
+        assertNull(index.mapName("field_1"));
+    }
+
+    private MappingsIndex roundTrip(String tiny) throws IOException {
+        Path path = dir.resolve("mappings.idx");
+        MappingsIndex.write(read(tiny), path);
+        return MappingsIndex.open(path);
+    }
+
+    private static MappingSet read(String tiny) throws IOException {
+        return MappingSet.read(new BufferedReader(new StringReader(tiny)), "intermediary", "named");
+    }
+}
@@ -0,0 +1,114 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameFilterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reportsEveryNameWrittenToIndex() throws IOException {
+        StringBuilder tiny = new StringBuilder("tiny\t2\t0\tintermediary\tnamed\n");
+        List<String> names = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            tiny.append("c\tnet/minecraft/class_").append(i).append("\tnet/minecraft/Named").append(i).append('\n');
+            tiny.append("\tf\tI\tfield_").append(i).append("\tvalue").append(i).append('\n');
+            tiny.append("\tm\t()V\tmethod_").append(i).append("\tupdate").append(i).append('\n');
+            names.addAll(List.of("net/minecraft/class_" + i, "field_" + i, "method_" + i));
+        }
+
+        // Two and three byte characters, which are hashed without encoding them when the filter is built
+        tiny.append("c\tnet/minecraft/\u00dcber_\u4e16\tnet/minecraft/Named\n");
+        names.add("net/minecraft/\u00dcber_\u4e16");
+
+        MappingsIndex index = index(tiny.toString());
+
+        for (String name : names) {
+            byte[] utf8 = modifiedUtf8("x" + name + "y");
+            assertTrue(index.mightContainName(utf8, 1, utf8.length - 2), name);
+        }
+    }
+
+    @Test
+    void reportsDottedClassNames() throws IOException {
+        MappingsIndex index = index("""
+                tiny\t2\t0\tintermediary\tnamed
+                c\tnet/minecraft/class_1\tnet/minecraft/block/Block
+                c\tnet/minecraft/class_1$class_2\tnet/minecraft/block/Block$Settings
+                """);
+
+        for (String name : List.of("net.minecraft.class_1", "net.minecraft.class_1$class_2")) {
+            byte[] utf8 = modifiedUtf8(name);
+            assertTrue(index.mightContainName(utf8, 0, utf8.length), name);
+        }
+    }
+
+    @Test
+    void hashesNullCharacterAsTwoBytes() {
+        // Modified UTF-8 stores U+0000 as C0 80 rather than as a zero byte
+        long[] words = NameFilter.build(List.of("a\0b"));
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * 8);
+        for (long word : words) buffer.putLong(word);
+
+        byte[] utf8 = modifiedUtf8("a\0b");
+        assertArrayEquals(new byte[]{'a', (byte) 0xC0, (byte) 0x80, 'b'}, utf8);
+        assertTrue(NameFilter.mightContain(buffer, 0, words.length, utf8, 0, utf8.length));
+    }
+
+    @Test
+    void rejectsMostOtherNames() throws IOException {
+        StringBuilder tiny = new StringBuilder("tiny\t2\t0\tintermediary\tnamed\n");
+        for (int i = 0; i < 1000; i++) {
+            tiny.append("c\tnet/minecraft/class_").append(i).append("\tnet/minecraft/Named").append(i).append('\n');
+        }
+
+        MappingsIndex index = index(tiny.toString());
+
+        int matches = 0;
+        for (int i = 0; i < 10_000; i++) {
+            byte[] utf8 = modifiedUtf8("mod/Class" + i);
+            if (index.mightContainName(utf8, 0, utf8.length)) matches++;
+        }
+
+        assertTrue(matches < 300, matches + " false positives");
+    }
+
+    private MappingsIndex index(String tiny) throws IOException {
+        Path path = dir.resolve("mappings.idx");
+        MappingsIndex.write(MappingSet.read(new BufferedReader(new StringReader(tiny)), "intermediary", "named"), path);
+        return MappingsIndex.open(path);
+    }
+
+    /**
+     * Encodes a string the way it is stored in a class file constant pool.
+     */
+    static byte[] modifiedUtf8(String string) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeUTF(string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] encoded = bytes.toByteArray();
+        return Arrays.copyOfRange(encoded, 2, encoded.length);
+    }
+}
@@ -0,0 +1,152 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawZipWriterTest {
+
+    // Several deflate blocks, so the entry goes through the parallel path
+    private static final byte[] LARGE = content(1024 * 1024 + 123);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsBlockDeflatedEntry() throws Exception {
+        Path jar = dir.resolve("parallel.jar");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (RawZipWriter writer = new RawZipWriter(jar, options(2), executor, null)) {
+            writer.write("assets/large.bin", LARGE);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            ZipEntry entry = zipFile.getEntry("assets/large.bin");
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                assertArrayEquals(LARGE, inputStream.readAllBytes());
+            }
+        }
+
+        // The concatenated blocks have to form one raw deflate stream on their own too
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (RawZipFile zipFile = RawZipFile.open(jar)) {
+            zipFile.transferTo(zipFile.getEntry("assets/large.bin"), Channels.newChannel(raw));
+        }
+        assertArrayEquals(LARGE, inflate(raw.toByteArray(), LARGE.length));
+    }
+
+    @Test
+    void deflatesOnWorkerOfItsOwnExecutor() throws Exception {
+        Path jar = dir.resolve("worker.jar");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (RawZipWriter writer = new RawZipWriter(jar, options(1), executor, null)) {
+            // The only worker waits for blocks queued behind it, so it has to deflate them itself
+            RawZipWriter.Compressed compressed = executor.submit(() -> writer.compress(LARGE)).get(30, TimeUnit.SECONDS);
+            writer.write("assets/large.bin", compressed);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (ZipFile zipFile = new ZipFile(jar.toFile());
+             InputStream inputStream = zipFile.getInputStream(zipFile.getEntry("assets/large.bin"))) {
+            assertArrayEquals(LARGE, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void reproducibleOutputIsIdenticalAcrossRuns() throws Exception {
+        Path first = dir.resolve("first.jar");
+        Path second = dir.resolve("second.jar");
+
+        // The same input built at two different times, as far as the timestamps of its entries go
+        write(first, source(dir.resolve("first-source.jar"), FileTime.from(Instant.parse("2020-01-01T00:00:00Z"))), options(1));
+        write(second, source(dir.resolve("second-source.jar"), FileTime.from(Instant.parse("2024-06-15T12:34:56Z"))), options(4));
+
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+    }
+
+    private static void write(Path jar, Path source, RemapOptions options) throws IOException {
+        try (RawZipFile sourceZip = RawZipFile.open(source);
+             RawZipWriter writer = new RawZipWriter(jar, options)) {
+            writer.copy(sourceZip, sourceZip.getEntry("fabric.mod.json"));
+            writer.write("assets/large.bin", LARGE);
+        }
+    }
+
+    private static Path source(Path jar, FileTime time) throws IOException {
+        try (ZipOutputStream outputStream = new ZipOutputStream(Files.newOutputStream(jar))) {
+            ZipEntry entry = new ZipEntry("fabric.mod.json");
+            entry.setLastModifiedTime(time);
+            outputStream.putNextEntry(entry);
+            outputStream.write("{\"id\": \"test\"}".getBytes(StandardCharsets.UTF_8));
+            outputStream.closeEntry();
+        }
+
+        Files.setLastModifiedTime(jar, time);
+        return jar;
+    }
+
+    private static RemapOptions options(int threads) {
+        RemapOptions options = new RemapOptions();
+        options.setThreads(threads);
+        options.parallelCompression(true);
+        options.reproducible(true);
+        return options;
+    }
+
+    private static byte[] inflate(byte[] raw, int size) throws Exception {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(raw);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(size);
+            byte[] buffer = new byte[64 * 1024];
+
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && inflater.needsInput()) fail("Deflate stream ends early");
+                output.write(buffer, 0, inflated);
+            }
+
+            return output.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Text-like content that compresses, with enough randomness to not be a single run.
+     */
+    private static byte[] content(int size) {
+        Random random = new Random(42);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return content;
+    }
+}
@@ -0,0 +1,156 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceRemapperTest {
+
+    // What TinyRemapper knows: intermediary to named classes and members
+    private static final SimpleRemapper REMAPPER = new SimpleRemapper(Map.of(
+            "net/minecraft/class_1", "net/minecraft/block/Block",
+            "net/minecraft/class_2", "net/minecraft/item/Item",
+            "net/minecraft/class_1.method_1(Lnet/minecraft/class_2;)V", "onPlaced",
+            "net/minecraft/class_1.field_1", "hardness"));
+
+    // The Tiny v2 fixups, for members TinyRemapper cannot resolve through the owner it was given
+    private static final MappingLookup FIXUPS = new MappingLookup() {
+        @Override
+        public String mapClass(String name) {
+            return null;
+        }
+
+        @Override
+        public String mapMember(String owner, String name, String descriptor) {
+            return null;
+        }
+
+        @Override
+        public String mapName(String name) {
+            return name.equals("method_2") ? "tick" : null;
+        }
+    };
+
+    private final ResourceRemapper remapper = new ResourceRemapper(REMAPPER, FIXUPS);
+
+    @Test
+    void remapsAccessWidener() {
+        String accessWidener = """
+                accessWidener\tv2\tintermediary
+                # Comments are kept as they are: net/minecraft/class_1 method_1
+                accessible\tclass\tnet/minecraft/class_1
+                extendable   method   net/minecraft/class_1   method_1   (Lnet/minecraft/class_2;)V   # trailing comment
+                mutable field net/minecraft/class_1 field_1 Lnet/minecraft/class_2;
+                transitive-accessible method mod/Subclass method_2 ()V
+                """;
+
+        assertEquals("""
+                accessWidener\tv2\tnamed
+                # Comments are kept as they are: net/minecraft/class_1 method_1
+                accessible\tclass\tnet/minecraft/block/Block
+                extendable   method   net/minecraft/block/Block   onPlaced   (Lnet/minecraft/item/Item;)V   # trailing comment
+                mutable field net/minecraft/block/Block hardness Lnet/minecraft/item/Item;
+                transitive-accessible method mod/Subclass tick ()V
+                """, remap("mod.accesswidener", accessWidener));
+    }
+
+    @Test
+    void remapsClassTweaker() {
+        String classTweaker = "classTweaker v1 intermediary\r\ninject-interface net/minecraft/class_1 net/minecraft/class_2\r\n";
+
+        assertEquals("classTweaker v1 named\r\ninject-interface net/minecraft/block/Block net/minecraft/item/Item\r\n",
+                remap("mod.classtweaker", classTweaker));
+    }
+
+    @Test
+    void keepsFilesOfOtherNamespaces() {
+        byte[] bytes = "accessWidener v2 named\naccessible class net/minecraft/class_1\n".getBytes(StandardCharsets.UTF_8);
+
+        assertSame(bytes, remapper.remap("mod.accesswidener", bytes));
+    }
+
+    @Test
+    void neverReplacesPartOfName() {
+        String accessWidener = """
+                accessWidener v2 intermediary
+                accessible class net/minecraft/class_10
+                accessible class net/minecraft/class_1$class_3
+                accessible class net/minecraft/class_1
+                """;
+
+        assertEquals("""
+                accessWidener v2 named
+                accessible class net/minecraft/class_10
+                accessible class net/minecraft/class_1$class_3
+                accessible class net/minecraft/block/Block
+                """, remap("mod.accesswidener", accessWidener));
+    }
+
+    @Test
+    void commentOnLaterLineDoesNotCutEarlierLines() {
+        String accessWidener = "accessWidener v2 intermediary\naccessible class net/minecraft/class_1\n\n# net/minecraft/class_2\n";
+
+        assertEquals("accessWidener v2 named\naccessible class net/minecraft/block/Block\n\n# net/minecraft/class_2\n",
+                remap("mod.accesswidener", accessWidener));
+    }
+
+    @Test
+    void remapsRefmap() {
+        String refmap = """
+                {
+                  "mappings": {
+                    "mod/mixin/BlockMixin": {
+                      "onPlaced": "Lnet/minecraft/class_1;method_1(Lnet/minecraft/class_2;)V",
+                      "hardness": "Lnet/minecraft/class_1;field_1:Lnet/minecraft/class_2;",
+                      "target": "net/minecraft/class_1",
+                      "escaped": "Lnet/minecraft/class_1;\\u006dethod_1"
+                    }
+                  },
+                  "data": {
+                    "named:intermediary": {
+                      "mod/mixin/BlockMixin": {
+                        "tick": "method_2"
+                      }
+                    }
+                  },
+                  "net/minecraft/class_1": "net/minecraft/class_1"
+                }
+                """;
+
+        assertEquals("""
+                {
+                  "mappings": {
+                    "mod/mixin/BlockMixin": {
+                      "onPlaced": "Lnet/minecraft/block/Block;onPlaced(Lnet/minecraft/item/Item;)V",
+                      "hardness": "Lnet/minecraft/block/Block;hardness:Lnet/minecraft/item/Item;",
+                      "target": "net/minecraft/block/Block",
+                      "escaped": "Lnet/minecraft/class_1;\\u006dethod_1"
+                    }
+                  },
+                  "data": {
+                    "named:intermediary": {
+                      "mod/mixin/BlockMixin": {
+                        "tick": "tick"
+                      }
+                    }
+                  },
+                  "net/minecraft/class_1": "net/minecraft/class_1"
+                }
+                """, remap("mod.refmap.json", refmap));
+    }
+
+    @Test
+    void keepsRefmapWithoutReferences() {
+        byte[] bytes = "{\"mappings\": {}, \"data\": {}}".getBytes(StandardCharsets.UTF_8);
+
+        assertSame(bytes, remapper.remap("mod.refmap.json", bytes));
+    }
+
+    private String remap(String name, String content) {
+        return new String(remapper.remap(name, content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+}
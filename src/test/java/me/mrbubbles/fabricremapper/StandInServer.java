@@ -0,0 +1,102 @@
+package me.mrbubbles.fabricremapper;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local HTTP server standing in for Maven and meta servers. It serves files with an {@code ETag}, and answers
+ * conditional and range requests the way those servers do.
+ */
+final class StandInServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final Map<String, File> files = new ConcurrentHashMap<>();
+    private final Map<String, Integer> errors = new ConcurrentHashMap<>();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    StandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    URI uri(String path) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/" + path);
+    }
+
+    void put(String path, byte[] content, String etag) {
+        files.put("/" + path, new File(content, etag));
+    }
+
+    /**
+     * Answers every request for a path with the given error status.
+     */
+    void fail(String path, int statusCode) {
+        errors.put("/" + path, statusCode);
+    }
+
+    /**
+     * The requests for a path, without those for its checksums.
+     */
+    List<Request> getRequests(String path) {
+        return requests.stream().filter(request -> request.path().equals("/" + path)).toList();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            Headers headers = exchange.getRequestHeaders();
+            requests.add(new Request(path, headers.getFirst("Range"), headers.getFirst("If-Range"), headers.getFirst("If-None-Match")));
+
+            File file = files.get(path);
+            if (file == null || errors.containsKey(path)) {
+                exchange.sendResponseHeaders(errors.getOrDefault(path, 404), -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("ETag", file.etag());
+
+            if (file.etag().equals(headers.getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            // A range is only served if the If-Range validator still matches, otherwise the whole file is sent
+            String range = headers.getFirst("Range");
+            String ifRange = headers.getFirst("If-Range");
+            int start = range != null && (ifRange == null || ifRange.equals(file.etag()))
+                    ? Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-'))) : 0;
+
+            if (start > 0) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (file.content().length - 1) + "/" + file.content().length);
+            }
+
+            exchange.sendResponseHeaders(start > 0 ? 206 : 200, file.content().length - start);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(file.content(), start, file.content().length - start);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    record Request(String path, String range, String ifRange, String ifNoneMatch) {
+    }
+
+    private record File(byte[] content, String etag) {
+    }
+}
@@ -0,0 +1,160 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TinyV2ReaderTest {
+
+    @Test
+    void readsClassesAndMembers() throws IOException {
+        // Original names and descriptors are in the first namespace of the file
+        assertEquals(List.of(
+                "c a net/minecraft/class_1 net/minecraft/block/Block",
+                "f I field_1 hardness",
+                "m (Lc;)V method_1 onPlaced",
+                "c c net/minecraft/class_2 net/minecraft/item/Item"
+        ), read("""
+                tiny\t2\t0\tofficial\tintermediary\tnamed
+                c\ta\tnet/minecraft/class_1\tnet/minecraft/block/Block
+                \tf\tI\tb\tfield_1\thardness
+                \tm\t(Lc;)V\tc\tmethod_1\tonPlaced
+                c\tc\tnet/minecraft/class_2\tnet/minecraft/item/Item
+                """, "intermediary", "named").visits);
+    }
+
+    @Test
+    void passesOriginalClassNameAndReversedNamespaces() throws IOException {
+        assertEquals(List.of(
+                "c a net/minecraft/block/Block net/minecraft/class_1",
+                "m (Lc;)V onPlaced method_1"
+        ), read("""
+                tiny\t2\t0\tofficial\tintermediary\tnamed
+                c\ta\tnet/minecraft/class_1\tnet/minecraft/block/Block
+                \tm\t(Lc;)V\tc\tmethod_1\tonPlaced
+                """, "named", "intermediary").visits);
+    }
+
+    @Test
+    void fallsBackToFirstNamespaceForMissingNames() throws IOException {
+        Recorder recorder = read("""
+                tiny\t2\t0\tintermediary\tnamed
+                c\tnet/minecraft/class_1\t
+                \tf\tI\tfield_1
+                """, "intermediary", "named");
+
+        assertEquals(List.of("c net/minecraft/class_1 net/minecraft/class_1 net/minecraft/class_1", "f I field_1 field_1"), recorder.visits);
+        assertSame(recorder.names.get(0), recorder.names.get(1));
+        assertSame(recorder.names.get(2), recorder.names.get(3));
+    }
+
+    @Test
+    void skipsCommentsParametersAndLocals() throws IOException {
+        assertEquals(List.of(
+                "c net/minecraft/class_1 net/minecraft/class_1 net/minecraft/block/Block",
+                "m (II)V method_1 setPos",
+                "f I field_1 hardness"
+        ), read("""
+                tiny\t2\t0\tintermediary\tnamed
+                \tsorted-by\tintermediary
+                c\tnet/minecraft/class_1\tnet/minecraft/block/Block
+                \tc\tA block.
+                \tm\t(II)V\tmethod_1\tsetPos
+                \t\tc\tSets the position.
+                \t\tp\t1\t\tx
+                \t\tp\t2\t\ty
+                \t\tv\t3\t4\t0\t\tpos
+                \tf\tI\tfield_1\thardness
+                \t\tc\tHow long it takes to break.
+                """, "intermediary", "named").visits);
+    }
+
+    @Test
+    void unescapesNamesWhenEscaped() throws IOException {
+        assertEquals(List.of(
+                "c net/minecraft/class_1 net/minecraft/class_1 net/minecraft/Tab\tNew\nLine\\Back",
+                "f I field_1 null\0"
+        ), read("""
+                tiny\t2\t0\tintermediary\tnamed
+                \tescaped-names
+                c\tnet/minecraft/class_1\tnet/minecraft/Tab\\tNew\\nLine\\\\Back
+                \tf\tI\tfield_1\tnull\\0
+                """, "intermediary", "named").visits);
+    }
+
+    @Test
+    void keepsBackslashesWhenNotEscaped() throws IOException {
+        assertEquals(List.of("c net/minecraft/class_1 net/minecraft/class_1 net/minecraft/Back\\tslash"), read("""
+                tiny\t2\t0\tintermediary\tnamed
+                c\tnet/minecraft/class_1\tnet/minecraft/Back\\tslash
+                """, "intermediary", "named").visits);
+    }
+
+    @Test
+    void readsCrlfLineEndings() throws IOException {
+        assertEquals(List.of(
+                "c net/minecraft/class_1 net/minecraft/class_1 net/minecraft/block/Block",
+                "m ()V method_1 tick",
+                "c net/minecraft/class_2 net/minecraft/class_2 net/minecraft/item/Item"
+        ), read("tiny\t2\t0\tintermediary\tnamed\r\n"
+                + "c\tnet/minecraft/class_1\tnet/minecraft/block/Block\r\n"
+                + "\tm\t()V\tmethod_1\ttick\r\n"
+                + "\t\tp\t1\t\tx\r\n"
+                + "c\tnet/minecraft/class_2\tnet/minecraft/item/Item", "intermediary", "named").visits);
+    }
+
+    @Test
+    void readsLinesLongerThanBuffer() throws IOException {
+        String longName = "net/minecraft/" + "a".repeat(200_000);
+
+        assertEquals(List.of("c " + longName + " " + longName + " net/minecraft/Long", "f I field_1 value"),
+                read("tiny\t2\t0\tintermediary\tnamed\nc\t" + longName + "\tnet/minecraft/Long\n\tf\tI\tfield_1\tvalue\n", "intermediary", "named").visits);
+    }
+
+    @Test
+    void rejectsOtherFormats() {
+        assertThrows(IOException.class, () -> read("v1\tofficial\tintermediary\n", "official", "intermediary"));
+        assertThrows(IOException.class, () -> read("", "intermediary", "named"));
+        assertThrows(IOException.class, () -> read("tiny\t2\t0\tofficial\tintermediary\n", "intermediary", "named"));
+    }
+
+    private static Recorder read(String tiny, String from, String to) throws IOException {
+        Recorder recorder = new Recorder();
+        TinyV2Reader.read(new StringReader(tiny), from, to, recorder);
+        return recorder;
+    }
+
+    /**
+     * Records every visit as one line, and the names it was given in order.
+     */
+    private static final class Recorder implements TinyV2Reader.Visitor {
+        final List<String> visits = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+
+        @Override
+        public void visitClass(String original, String from, String to) {
+            record("c " + original, from, to);
+        }
+
+        @Override
+        public void visitField(String descriptor, String from, String to) {
+            record("f " + descriptor, from, to);
+        }
+
+        @Override
+        public void visitMethod(String descriptor, String from, String to) {
+            record("m " + descriptor, from, to);
+        }
+
+        private void record(String visit, String from, String to) {
+            visits.add(visit + " " + from + " " + to);
+            names.add(from);
+            names.add(to);
+        }
+    }
+}
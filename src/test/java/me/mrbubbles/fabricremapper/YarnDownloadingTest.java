@@ -0,0 +1,76 @@
+package me.mrbubbles.fabricremapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YarnDownloadingTest {
+
+    @TempDir
+    Path dir;
+
+    private StandInServer server;
+    private YarnDownloading yarn;
+    private MappingsCache cache;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StandInServer();
+        yarn = new YarnDownloading(new Downloader(HttpClient.newHttpClient()), server.uri("maven/"), server.uri("meta/"));
+        cache = new MappingsCache(dir, MappingsCache.DEFAULT_MAX_SIZE, false);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void resolvesMappingsFromMavenUrl() throws Exception {
+        byte[] jar = "not really a jar".getBytes(StandardCharsets.UTF_8);
+        server.put("maven/net/fabricmc/yarn/1.20.1+build.10/yarn-1.20.1+build.10-v2.jar", jar, "\"jar\"");
+
+        Path resolved = yarn.resolveTiny2("1.20.1+build.10", cache);
+
+        assertArrayEquals(jar, Files.readAllBytes(resolved));
+        assertEquals(resolved, yarn.resolveTiny2("1.20.1+build.10", cache));
+        assertEquals(1, server.getRequests("maven/net/fabricmc/yarn/1.20.1+build.10/yarn-1.20.1+build.10-v2.jar").size());
+    }
+
+    @Test
+    void loadsMappingsThroughGivenInstance() throws Exception {
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(jar)) {
+            zip.putNextEntry(new ZipEntry("mappings/mappings.tiny"));
+            zip.write("tiny\t2\t0\tintermediary\tnamed\nc\tnet/minecraft/class_1\tnet/minecraft/block/Block\n".getBytes(StandardCharsets.UTF_8));
+        }
+        server.put("maven/net/fabricmc/yarn/1.20.1+build.10/yarn-1.20.1+build.10-v2.jar", jar.toByteArray(), "\"jar\"");
+
+        LoadedMappings mappings = LoadedMappings.load("1.20.1+build.10", yarn, cache, null);
+
+        assertEquals("net/minecraft/block/Block", mappings.getLookup().mapClass("net/minecraft/class_1"));
+    }
+
+    @Test
+    void readsBuildsFromMetaUrl() {
+        server.put("meta/v2/versions/yarn/1.20.1", "[{\"build\": 9}, {\"build\": 10}]".getBytes(StandardCharsets.UTF_8), "\"meta\"");
+
+        assertEquals(Set.of(9, 10), yarn.getYarnBuilds("1.20.1", cache, Duration.ofHours(1)));
+        assertEquals("1.20.1+build.10", yarn.getMappingsVersion("1.20.1", cache, Duration.ofHours(1)));
+        assertEquals(1, server.getRequests("meta/v2/versions/yarn/1.20.1").size());
+    }
+}